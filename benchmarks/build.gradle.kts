@@ -0,0 +1,25 @@
+/*
+ * JMH benchmarks of the ECS and collections of :core.
+ * Run with `./gradlew :benchmarks:jmh`, results are written as JSON to build/results/jmh/results.json.
+ * Narrow a run down with e.g. `-Pjmh.includes=UnorderedList`.
+ */
+
+plugins {
+    id("buildlogic.java-common-conventions")
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+dependencies {
+    jmh(project(":core"))
+}
+
+jmh {
+    jmhVersion = "1.37"
+    resultFormat = "JSON"
+    warmupIterations = 3
+    iterations = 5
+    fork = 1
+    // SIMD kernels of util.BatchMath
+    jvmArgsAppend = listOf("--add-modules", "jdk.incubator.vector")
+    findProperty("jmh.includes")?.let { includes = listOf(it.toString()) }
+}
@@ -0,0 +1,77 @@
+package util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scalar against SIMD {@link BatchMath} kernels. The scalar kernels are the loops the engine ran before.
+ * The vector kernels need the Vector API module, which the build adds to the forked JVMs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BatchMathBenchmarks {
+    @Param({"scalar", "vector"})
+    String kernels;
+
+    @Param({"1000", "100000"})
+    int count;
+
+    BatchMath.Kernels k;
+
+    float[] m, planes, mats, matsOut, points, pointsOut, spheres;
+    float[][] columns;
+    int[] visible;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        k = kernels.equals("scalar") ? BatchMath.SCALAR : BatchMath.VECTOR;
+        if (k == null) {
+            throw new RuntimeException("Vector API unavailable, run with --add-modules jdk.incubator.vector!");
+        }
+        Random random = new Random(42);
+        m = randoms(random, 16, 1);
+        mats = randoms(random, count * 16, 1);
+        matsOut = new float[count * 16];
+        points = randoms(random, count * 3, 100);
+        pointsOut = new float[count * 3];
+        // Box of half size 50 around the origin, about an eighth of the spheres are visible
+        planes = new float[]{1, 0, 0, 50, -1, 0, 0, 50, 0, 1, 0, 50, 0, -1, 0, 50, 0, 0, 1, 50, 0, 0, -1, 50};
+        spheres = randoms(random, count * 4, 100);
+        for (int i = 3; i < spheres.length; i += 4) spheres[i] = Math.abs(spheres[i]) / 50;
+        visible = new int[count];
+        columns = new float[25][];
+        for (int c = 0; c < 25; c++) columns[c] = randoms(random, count, 3);
+    }
+
+    private static float[] randoms(Random random, int length, float range) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) values[i] = (random.nextFloat() * 2 - 1) * range;
+        return values;
+    }
+
+    @Benchmark
+    public float[] mul() {
+        k.mul(m, mats, 0, matsOut, 0, count);
+        return matsOut;
+    }
+
+    @Benchmark
+    public float[][] compose() {
+        k.compose(columns, 0, 9, 0, count);
+        return columns;
+    }
+
+    @Benchmark
+    public float[] transformPoints() {
+        k.transformPoints(m, points, 0, pointsOut, 0, count);
+        return pointsOut;
+    }
+
+    @Benchmark
+    public int cullSpheres() {
+        return k.cullSpheres(planes, 6, spheres, 0, count, visible);
+    }
+}
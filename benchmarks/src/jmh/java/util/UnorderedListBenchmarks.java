@@ -0,0 +1,102 @@
+package util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import util.ecs.Identifiable;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding to, removing from and iterating over an {@link UnorderedList} at growing sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UnorderedListBenchmarks {
+    public static class Element extends Identifiable {
+        int value;
+
+        Element(int value) {
+            this.value = value;
+        }
+    }
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int count;
+
+    Element[] elements;
+
+    /**
+     * Holds all elements
+     */
+    UnorderedList<Element> list;
+
+    /**
+     * Random positions to remove at, each valid for the list size at its turn
+     */
+    int[] removals;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        elements = new Element[count];
+        for (int i = 0; i < count; i++) {
+            elements[i] = new Element(i);
+        }
+        removals = new int[count];
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            removals[i] = random.nextInt(count - i);
+        }
+        list = filled(elements);
+    }
+
+    private static UnorderedList<Element> filled(Element[] elements) {
+        UnorderedList<Element> list = new UnorderedList<>();
+        for (Element e : elements) {
+            list.add(e);
+        }
+        return list;
+    }
+
+    /**
+     * List emptied by {@link #remove}, refilled before every iteration (a single call each, see there)
+     */
+    @State(Scope.Thread)
+    public static class Removed {
+        UnorderedList<Element> list;
+
+        @Setup(Level.Iteration)
+        public void fill(UnorderedListBenchmarks benchmark) {
+            list = filled(benchmark.elements);
+        }
+    }
+
+    @Benchmark
+    public UnorderedList<Element> add() {
+        return filled(elements);
+    }
+
+    /**
+     * Empties the list by removing at random positions. Measured one call per iteration, so the list is refilled
+     * outside of the timed region without the per-call overhead of {@link Level#Invocation} setups.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 10)
+    @Measurement(iterations = 20)
+    public void remove(Removed removed, Blackhole bh) {
+        for (int index : removals) {
+            bh.consume(removed.list.remove(index));
+        }
+    }
+
+    @Benchmark
+    public int iterate() {
+        int sum = 0;
+        for (Element e : list) {
+            sum += e.value;
+        }
+        return sum;
+    }
+}
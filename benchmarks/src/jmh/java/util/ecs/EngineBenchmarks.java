@@ -0,0 +1,103 @@
+package util.ecs;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity creation, deletion and lookup at growing entity counts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EngineBenchmarks {
+    public static class Position {
+        float x, y;
+    }
+
+    public static class Velocity {
+        float x, y;
+    }
+
+    public static class Health {
+        int hp = 100;
+    }
+
+    /**
+     * Entities in the engine
+     */
+    @Param({"1000", "10000", "100000", "1000000"})
+    int count;
+
+    /**
+     * Every entity has a Position, every other one a Velocity and every fourth one a Health
+     */
+    Engine engine;
+
+    /**
+     * Handles of the entities, in creation order
+     */
+    long[] handles;
+
+    /**
+     * Next entity replaced by {@link #churn()}
+     */
+    int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        engine = new Engine();
+        handles = new long[count];
+        for (int i = 0; i < count; i++) {
+            handles[i] = create(engine, i).getHandle();
+        }
+        cursor = 0;
+    }
+
+    private static Entity create(Engine engine, int i) {
+        if (i % 4 == 0) return engine.createEntity(new Position(), new Velocity(), new Health());
+        if (i % 2 == 0) return engine.createEntity(new Position(), new Velocity());
+        return engine.createEntity(new Position());
+    }
+
+    /**
+     * Fills a fresh engine
+     */
+    @Benchmark
+    public Engine createEntity() {
+        Engine fresh = new Engine();
+        for (int i = 0; i < count; i++) {
+            create(fresh, i);
+        }
+        return fresh;
+    }
+
+    /**
+     * Deletes 1000 entities and creates as many, keeping the engine at a steady size while slots get recycled
+     */
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public void churn() {
+        for (int n = 0; n < 1000; n++) {
+            engine.deleteEntity(handles[cursor]);
+            handles[cursor] = create(engine, cursor).getHandle();
+            cursor = (cursor + 1) % count;
+        }
+    }
+
+    @Benchmark
+    public void findEntitiesWith1(Blackhole bh) {
+        engine.findEntitiesWith(Position.class).forEach(r -> bh.consume(r.components));
+    }
+
+    @Benchmark
+    public void findEntitiesWith2(Blackhole bh) {
+        engine.findEntitiesWith(Position.class, Velocity.class).forEach(r -> bh.consume(r.components.comp2));
+    }
+
+    @Benchmark
+    public void findEntitiesWith3(Blackhole bh) {
+        engine.findEntitiesWith(Position.class, Velocity.class, Health.class).forEach(r -> bh.consume(r.components.comp3));
+    }
+}
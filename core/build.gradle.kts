@@ -38,4 +38,49 @@ dependencies {
     runtimeOnly("org.lwjgl:lwjgl-openal::$lwjglNatives")
     runtimeOnly("org.lwjgl:lwjgl-opengl::$lwjglNatives")
     runtimeOnly("org.lwjgl:lwjgl-stb::$lwjglNatives")
-}
\ No newline at end of file
+}
+
+// Core builds warning-clean, keep it that way
+tasks.named<JavaCompile>("compileJava") {
+    options.compilerArgs.addAll(listOf("-Xlint:all", "-Werror"))
+}
+
+tasks.named<JavaCompile>("compileTestJava") {
+    options.compilerArgs.addAll(listOf("-Xlint:all", "-Werror"))
+}
+
+// util.VectorKernels is built on the incubating Vector API. It lives in its own source set, the only code compiled with
+// the module, and ships in the jar of core: util.BatchMath loads it when the JVM runs with the module, and falls back
+// to scalar code otherwise.
+val vector by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+}
+
+tasks.named<JavaCompile>("compileVectorJava") {
+    // The module is used on purpose, -nowarn silences javac's warning about it (the only one -Xlint leaves on)
+    options.compilerArgs.addAll(listOf("--add-modules", "jdk.incubator.vector", "-nowarn"))
+}
+
+tasks.jar {
+    from(vector.output)
+}
+
+sourceSets.test {
+    runtimeClasspath += vector.output
+}
+
+// The regular tests run without the module, so on scalar code. This runs the BatchMath ones again on the SIMD kernels.
+val vectorTest by tasks.registering(Test::class) {
+    description = "Runs the BatchMath tests with the Vector API."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform()
+    filter.includeTestsMatching("util.BatchMathTests")
+    jvmArgs("--add-modules", "jdk.incubator.vector")
+    systemProperty("batchmath.vectorTest", "true")
+}
+
+tasks.check {
+    dependsOn(vectorTest)
+}
@@ -1,6 +1,8 @@
 package game;
 
+import game.components.Spotlight;
 import game.components.Transform;
+import util.Matrix4;
 import util.Vector3;
 import util.opengl.Material;
 import util.opengl.Mesh;
@@ -24,34 +26,44 @@ public class Awesome extends ScreenController {
                         .setShader("cube")
                         .addTexture(new TextureManager.Texture("awesomeface.png"), "texture1")
         );
-        for (int i = 0; i < 10000; i++) {
-            // Instancing could be used here, but this works too
-            engine.createEntity(
-                    cube,
-                    new Transform(
-                            new Vector3(rand(-100f, 100f), rand(-100f, 100f), rand(-100f, 100f)),
-                            new Vector3(),
-                            new Vector3(rand(0.4f, 1.3f), rand(0.4f, 1.3f), rand(0.4f, 1.3f))
-                    )
-            );
-        }
+        // Instancing could be used here, but this works too
+        engine.createEntities(10000, engine.archetype(Mesh.class, Transform.class), chunk -> {
+            Object[] meshes = chunk.objects(Mesh.class), transforms = chunk.objects(Transform.class);
+            for (int r = chunk.from(); r < chunk.to(); r++) {
+                meshes[r] = cube;
+                transforms[r] = new Transform(
+                        new Vector3(rand(-100f, 100f), rand(-100f, 100f), rand(-100f, 100f)),
+                        new Vector3(),
+                        new Vector3(rand(0.4f, 1.3f), rand(0.4f, 1.3f), rand(0.4f, 1.3f))
+                );
+            }
+        });
 
-        // Very basic rendering system with camera
+        // Very basic rendering system with camera. It draws the snapshot of the previous frame, so it does not touch
+        // components and could overlap with systems moving the cubes.
+        RenderPublisher publisher = new RenderPublisher(engine, camera);
+        engine.addSystem(publisher).reads(Mesh.class, Transform.class, Spotlight.class);
+        Matrix4 combined = new Matrix4(), world = new Matrix4();
         engine.addSystem((engine, delta) -> {
-            // Small optimization, we are only using one shader
-            cube.begin();
-            cube.setCombinedMatrix(camera.getViewProj());
-            cube.end();
-            engine.findEntitiesWith(Mesh.class, Transform.class).forEach((result -> {
-                var pair = result.components;
-                Mesh mesh = pair.comp1;
-                Transform transform = pair.comp2;
-                mesh.begin();
-                mesh.setModelMatrix(transform.getModel());
-                mesh.render();
-                mesh.end();
-            }));
-        });
+            RenderSnapshot snapshot = publisher.acquire();
+            if (snapshot == null) return;
+            try {
+                // Small optimization, we are only using one shader
+                cube.begin();
+                cube.setCombinedMatrix(combined.set(snapshot.getViewProj()));
+                cube.end();
+                int[] meshIds = snapshot.getMeshIds();
+                for (int i = 0; i < snapshot.getCount(); i++) {
+                    Mesh mesh = snapshot.getMesh(meshIds[i]);
+                    mesh.begin();
+                    mesh.setModelMatrix(snapshot.getWorld(i, world));
+                    mesh.render();
+                    mesh.end();
+                }
+            } finally {
+                publisher.release(snapshot);
+            }
+        }).reads().mainThread();
     }
 
     private float rand(float min, float max) {
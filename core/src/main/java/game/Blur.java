@@ -2,6 +2,7 @@ package game;
 
 import game.components.Transform;
 import util.Vector3;
+import util.ecs.Query;
 import util.opengl.*;
 
 /**
@@ -34,19 +35,17 @@ public class Blur extends ScreenController {
         this.quad = MeshPrimitives.Quad().setMat(new Material().setShader("screenspace"));
 
         // Multi-pass render system
+        Query renderables = engine.query(Mesh.class, Transform.class);
         engine.addSystem((engine, delta) -> {
             // First pass
             buffer.bind();
-            engine.findEntitiesWith(Mesh.class, Transform.class).forEach((result -> {
-                var pair = result.components;
-                Mesh mesh = pair.comp1;
-                Transform transform = pair.comp2;
+            renderables.forEach((Mesh mesh, Transform transform) -> {
                 mesh.begin();
                 mesh.setCombinedMatrix(camera.getViewProj());
                 mesh.setModelMatrix(transform.getModel());
                 mesh.render();
                 mesh.end();
-            }));
+            });
             buffer.unbind();
 
             // Next pass
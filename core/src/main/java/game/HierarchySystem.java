@@ -0,0 +1,238 @@
+package game;
+
+import game.components.Hierarchy;
+import game.components.Transform;
+import util.Matrix4;
+import util.ecs.Each1;
+import util.ecs.Each2;
+import util.ecs.Engine;
+import util.ecs.Entity;
+import util.ecs.Query;
+import util.ecs.System;
+
+import java.util.Arrays;
+
+/**
+ * Computes the world matrix of every entity with a {@link Transform} and a {@link Hierarchy}.
+ * Nodes are laid out in depth order (parents before children) in contiguous arrays, so a single forward pass
+ * propagates changes down the tree. A node is only recomputed if its transform or an ancestor's changed, leaving
+ * static subtrees untouched. World matrices are packed back to back in one float[], ready for upload.
+ */
+public class HierarchySystem implements System {
+    private final Engine engine;
+
+    /**
+     * Every node, nodes that appeared since the last run, and nodes whose Transform was set since the last run
+     */
+    private final Query nodes, spawned, replaced;
+
+    /**
+     * Prebuilt actions of the queries above, so runs do not allocate
+     */
+    private final Each1<Transform> onSpawned;
+    private final Each2<Transform, Hierarchy> onReplaced;
+
+    /**
+     * Whether a node appeared since the last run
+     */
+    private boolean appeared;
+
+    /**
+     * Whether a node was attached or detached since the last run
+     */
+    private boolean relinked;
+
+    /**
+     * Number of nodes laid out
+     */
+    private int count;
+
+    // Indexed by node position in depth order
+    private Transform[] transforms;
+    private int[] parentOf;
+    private int[] versions;
+    private boolean[] dirty;
+
+    /**
+     * world[16 * i .. 16 * i + 15] = world matrix (column major) of node i
+     */
+    private float[] world;
+
+    /**
+     * Model matrix of the node being recomputed
+     */
+    private final float[] local = new float[16];
+
+    /**
+     * Number of world matrices recomputed by the last run
+     */
+    private int recomputed;
+
+    public HierarchySystem(Engine engine) {
+        this.engine = engine;
+        this.nodes = engine.query(Transform.class, Hierarchy.class);
+        this.spawned = engine.query(Transform.class, Hierarchy.class).added(Hierarchy.class);
+        this.replaced = engine.query(Transform.class, Hierarchy.class).changed(Transform.class);
+        this.onSpawned = transform -> appeared = true;
+        this.onReplaced = (transform, h) -> {
+            int i = h.getIndex();
+            if (transforms[i] != transform) {
+                transforms[i] = transform;
+                // Forces the computation
+                versions[i] = transform.getVersion() - 1;
+            }
+        };
+        this.transforms = new Transform[0];
+        this.parentOf = new int[0];
+        this.versions = new int[0];
+        this.dirty = new boolean[0];
+        this.world = new float[0];
+        this.relinked = true;
+    }
+
+    /**
+     * Makes parent the parent of child, detaching child from its previous parent.
+     *
+     * @throws RuntimeException if an entity lacks a Hierarchy, or if child is an ancestor of parent
+     */
+    public void attach(Entity child, Entity parent) {
+        Hierarchy p = hierarchy(parent);
+        for (Entity e = parent; e != null; e = engine.getEntity(hierarchy(e).getParent())) {
+            if (e == child) {
+                throw new RuntimeException("Hierarchy cannot contain cycles!");
+            }
+        }
+        detach(child);
+        hierarchy(child).setParent(parent.getHandle());
+        p.addChild(child.getHandle());
+        relinked = true;
+    }
+
+    /**
+     * Makes child a root.
+     */
+    public void detach(Entity child) {
+        Hierarchy h = hierarchy(child);
+        Entity parent = engine.getEntity(h.getParent());
+        if (parent != null) {
+            hierarchy(parent).removeChild(child.getHandle());
+        }
+        h.setParent(Hierarchy.NONE);
+        relinked = true;
+    }
+
+    private static Hierarchy hierarchy(Entity entity) {
+        Hierarchy h = entity.getComponent(Hierarchy.class);
+        if (h == null) {
+            throw new RuntimeException("Entity is not part of the hierarchy!");
+        }
+        return h;
+    }
+
+    @Override
+    public void run(Engine engine, float delta) {
+        appeared = false;
+        spawned.forEach(onSpawned);
+        if (relinked || appeared || nodes.size() != count) {
+            layout();
+        }
+        // A Transform set over another one is a different object than the cached one
+        replaced.forEach(onReplaced);
+        recomputed = 0;
+        for (int i = 0; i < count; i++) {
+            Transform transform = transforms[i];
+            int p = parentOf[i];
+            dirty[i] = transform.getVersion() != versions[i] || (p >= 0 && dirty[p]);
+            if (!dirty[i]) continue;
+            versions[i] = transform.getVersion();
+            // getModel() would mutate the cache of the Transform, which this system only reads
+            if (p < 0) {
+                transform.getModel(world, i << 4);
+            } else {
+                Matrix4.mul(world, p << 4, transform.getModel(local, 0), 0, world, i << 4);
+            }
+            recomputed++;
+        }
+    }
+
+    /**
+     * Sorts the nodes by depth and resolves the position of their parent. Every node is recomputed afterwards.
+     */
+    private void layout() {
+        count = nodes.size();
+        Entity[] entities = new Entity[count];
+        int[] depths = new int[count];
+        int[] n = {0};
+        nodes.forEachEntity(entity -> {
+            int depth = 0;
+            for (Entity e = parent(entity); e != null; e = parent(e)) depth++;
+            entities[n[0]] = entity;
+            depths[n[0]++] = depth;
+        });
+        // Counting sort by depth, stable
+        int maxDepth = Arrays.stream(depths).max().orElse(0);
+        int[] perDepth = new int[maxDepth + 2];
+        for (int depth : depths) perDepth[depth + 1]++;
+        for (int d = 0; d <= maxDepth; d++) perDepth[d + 1] += perDepth[d];
+        Entity[] ordered = new Entity[count];
+        for (int i = 0; i < count; i++) ordered[perDepth[depths[i]]++] = entities[i];
+
+        transforms = new Transform[count];
+        parentOf = new int[count];
+        versions = new int[count];
+        dirty = new boolean[count];
+        world = new float[count << 4];
+        for (int i = 0; i < count; i++) {
+            ordered[i].getComponent(Hierarchy.class).setIndex(i);
+            transforms[i] = ordered[i].getComponent(Transform.class);
+            // Forces the first computation
+            versions[i] = transforms[i].getVersion() - 1;
+        }
+        for (int i = 0; i < count; i++) {
+            Entity parent = parent(ordered[i]);
+            parentOf[i] = parent == null ? -1 : parent.getComponent(Hierarchy.class).getIndex();
+        }
+        relinked = false;
+    }
+
+    /**
+     * @return Parent of the entity if it is a node, null for roots (and parents deleted or outside the hierarchy)
+     */
+    private Entity parent(Entity entity) {
+        Entity parent = engine.getEntity(entity.getComponent(Hierarchy.class).getParent());
+        if (parent == null || !nodes.contains(parent)) return null;
+        return parent;
+    }
+
+    /**
+     * @return World matrices of all nodes (16 floats each, column major), the node of an entity is at {@link Hierarchy#getIndex()}
+     */
+    public float[] getWorldMatrices() {
+        return world;
+    }
+
+    /**
+     * @return Number of nodes, i.e. of matrices in {@link #getWorldMatrices()}
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return Number of world matrices recomputed by the last run
+     */
+    public int getRecomputed() {
+        return recomputed;
+    }
+
+    /**
+     * Copies the world matrix of an entity in the hierarchy.
+     *
+     * @return out for chaining
+     */
+    public Matrix4 getWorld(Entity entity, Matrix4 out) {
+        int index = hierarchy(entity).getIndex();
+        java.lang.System.arraycopy(world, index << 4, out.val, 0, 16);
+        return out;
+    }
+}
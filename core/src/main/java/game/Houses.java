@@ -1,5 +1,6 @@
 package game;
 
+import util.ecs.Query;
 import util.opengl.Geometry;
 import util.opengl.Material;
 import util.opengl.Mesh;
@@ -34,13 +35,13 @@ public class Houses extends ScreenController {
         ).setMat(new Material().setShader("house"));
         engine.createEntity(pointMesh);
 
+        Query meshes = engine.query(Mesh.class);
         engine.addSystem((engine, delta) -> {
-            engine.findEntitiesWith(Mesh.class).forEach((result -> {
-                Mesh mesh = result.components;
+            meshes.forEach((Mesh mesh) -> {
                 mesh.begin();
                 mesh.render(GL_POINTS);
                 mesh.end();
-            }));
+            });
         });
     }
 
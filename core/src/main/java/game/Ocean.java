@@ -3,6 +3,8 @@ package game;
 import game.components.Transform;
 import util.Matrix4;
 import util.Vector3;
+import util.ecs.Query;
+import util.ecs.Tag;
 import util.opengl.*;
 
 import static org.lwjgl.glfw.GLFW.glfwGetTime;
@@ -21,7 +23,7 @@ public class Ocean extends ScreenController {
     /**
      * Transparency tag
      */
-    private class Transparent {
+    private static class Transparent implements Tag {
     }
 
     public Ocean() {
@@ -59,9 +61,8 @@ public class Ocean extends ScreenController {
                         new Vector3(0, 0, 3000f),
                         new Vector3(),
                         new Vector3(length, length, 1)
-                ),
-                new Transparent()
-        );
+                )
+        ).tag(Transparent.class);
 
         Skybox skybox = new Skybox("ocean", "jpg");
 
@@ -73,37 +74,31 @@ public class Ocean extends ScreenController {
         tree.setVec3f("u_sunColor", sunColor);
         tree.end();
 
+        Query opaqueMeshes = engine.query().with(Mesh.class, Transform.class).without(Transparent.class).build();
+        Query opaqueModels = engine.query().with(Model.class, Transform.class).without(Transparent.class).build();
+        Query transparentMeshes = engine.query().with(Mesh.class, Transform.class, Transparent.class).build();
+
         // Simple render system with transparency support
         engine.addSystem((engine, delta) -> {
 
             // First render opaque objects
-            engine.findEntitiesWith(Mesh.class, Transform.class)
-                    .filter((result) -> !result.entity.containsType(Transparent.class))
-                    .forEach((result -> {
-                        var pair = result.components;
-                        Mesh mesh = pair.comp1;
-                        Transform transform = pair.comp2;
-                        mesh.begin();
-                        mesh.setCombinedMatrix(camera.getViewProj());
-                        mesh.setModelMatrix(transform.getModel());
-                        mesh.render();
-                        mesh.end();
-                    }));
-
-            engine.findEntitiesWith(Model.class, Transform.class)
-                    .filter((result) -> !result.entity.containsType(Transparent.class))
-                    .forEach((result -> {
-                        var pair = result.components;
-                        Model model = pair.comp1;
-                        Transform transform = pair.comp2;
-                        model.begin();
-                        model.setVec3f("u_viewPos", camera.getTransform().getPosition());
-                        model.setCombinedMatrix(camera.getViewProj());
-                        model.setFloat("u_time", (float) glfwGetTime());
-                        model.setModelMatrix(transform.getModel());
-                        model.render();
-                        model.end();
-                    }));
+            opaqueMeshes.forEach((Mesh mesh, Transform transform) -> {
+                mesh.begin();
+                mesh.setCombinedMatrix(camera.getViewProj());
+                mesh.setModelMatrix(transform.getModel());
+                mesh.render();
+                mesh.end();
+            });
+
+            opaqueModels.forEach((Model model, Transform transform) -> {
+                model.begin();
+                model.setVec3f("u_viewPos", camera.getTransform().getPosition());
+                model.setCombinedMatrix(camera.getViewProj());
+                model.setFloat("u_time", (float) glfwGetTime());
+                model.setModelMatrix(transform.getModel());
+                model.render();
+                model.end();
+            });
 
             // Render skybox
             glDepthFunc(GL_LEQUAL); // Since cubemap depth values are at 1
@@ -119,19 +114,14 @@ public class Ocean extends ScreenController {
             glDepthFunc(GL_LESS);
 
             // Finally, render transparent objects
-            engine.findEntitiesWith(Mesh.class, Transform.class)
-                    .forEach((result -> {
-                        var pair = result.components;
-                        Mesh mesh = pair.comp1;
-                        Transform transform = pair.comp2;
-                        mesh.begin();
-                        mesh.setCombinedMatrix(camera.getViewProj());
-                        mesh.setModelMatrix(transform.getModel());
-                        mesh.setModelMatrix(transform.getModel());
-                        mesh.getMat().setFloat("iTime", elapsed);
-                        mesh.render();
-                        mesh.end();
-                    }));
+            transparentMeshes.forEach((Mesh mesh, Transform transform) -> {
+                mesh.begin();
+                mesh.setCombinedMatrix(camera.getViewProj());
+                mesh.setModelMatrix(transform.getModel());
+                mesh.getMat().setFloat("iTime", elapsed);
+                mesh.render();
+                mesh.end();
+            });
 
         });
     }
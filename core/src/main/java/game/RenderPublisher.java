@@ -0,0 +1,156 @@
+package game;
+
+import game.components.Camera;
+import game.components.Spotlight;
+import game.components.Transform;
+import util.Vector3;
+import util.ecs.Each1;
+import util.ecs.Each2;
+import util.ecs.Engine;
+import util.ecs.Query;
+import util.ecs.System;
+import util.opengl.Mesh;
+
+/**
+ * Copies what the renderer needs out of the engine into a {@link RenderSnapshot}, so drawing never touches components.
+ * Two snapshots are used in turn: the system fills the back one while the renderer reads the front one, and the two
+ * swap once the back one is complete. Add it with {@code reads(Mesh.class, Transform.class, Spotlight.class)}, after the
+ * systems moving things around; a renderer declaring no component access (e.g. {@code reads()}) can then draw the
+ * previous frame while the simulation runs. Publishing gives up with an exception if the renderer holds a snapshot
+ * for too long, rather than stalling the simulation forever.
+ */
+public class RenderPublisher implements System {
+    /**
+     * Default time the renderer may hold a snapshot, in milliseconds
+     */
+    public static final long TIMEOUT = 1000;
+
+    private final Camera camera;
+    private final long timeout;
+    private final Query renderables, spotlights;
+
+    private RenderSnapshot front, back;
+
+    /**
+     * Snapshot held by the renderer, null if none
+     */
+    private RenderSnapshot reading;
+
+    /**
+     * Whether front was published, and not just allocated
+     */
+    private boolean published;
+
+    private long frame;
+
+    /**
+     * Snapshot being filled by the callbacks below, created once to keep run allocation-free
+     */
+    private RenderSnapshot filling;
+    private final Each2<Mesh, Transform> copyRenderable;
+    private final Each1<Spotlight> copySpotlight;
+
+    public RenderPublisher(Engine engine, Camera camera) {
+        this(engine, camera, TIMEOUT);
+    }
+
+    /**
+     * @param timeout Time in milliseconds the renderer may hold a snapshot the next run needs, see {@link #run}
+     */
+    public RenderPublisher(Engine engine, Camera camera, long timeout) {
+        this.camera = camera;
+        this.timeout = timeout;
+        this.renderables = engine.query(Mesh.class, Transform.class);
+        this.spotlights = engine.query(Spotlight.class);
+        this.front = new RenderSnapshot();
+        this.back = new RenderSnapshot();
+        this.copyRenderable = (mesh, transform) -> {
+            int i = filling.addEntity();
+            // getModel() would mutate the cache of the Transform, which this system only reads
+            transform.getModel(filling.worlds, i << 4);
+            filling.meshIds[i] = filling.register(mesh);
+            filling.materialIds[i] = mesh.getMat() == null ? -1 : filling.register(mesh.getMat());
+        };
+        this.copySpotlight = light -> {
+            int i = filling.addLight() * RenderSnapshot.LIGHT_STRIDE;
+            float[] l = filling.lights;
+            Vector3 position = light.getTransform().getPosition(), rotation = light.getTransform().getRotation();
+            l[i] = position.x;
+            l[i + 1] = position.y;
+            l[i + 2] = position.z;
+            l[i + 3] = rotation.x;
+            l[i + 4] = rotation.y;
+            l[i + 5] = rotation.z;
+            l[i + 6] = light.getSpotAngle();
+            l[i + 7] = light.range;
+            l[i + 8] = light.color.x;
+            l[i + 9] = light.color.y;
+            l[i + 10] = light.color.z;
+            l[i + 11] = light.intensity;
+        };
+    }
+
+    /**
+     * @throws RuntimeException if the renderer holds the snapshot to fill for longer than the timeout
+     */
+    @Override
+    public void run(Engine engine, float delta) {
+        synchronized (this) {
+            // The renderer may still hold the previous front
+            long deadline = java.lang.System.nanoTime() + timeout * 1_000_000;
+            while (reading == back) {
+                long left = deadline - java.lang.System.nanoTime();
+                if (left <= 0) {
+                    throw new RuntimeException("Renderer did not release its snapshot in time!");
+                }
+                try {
+                    wait(Math.max(1, left / 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        filling = back;
+        back.clear();
+        back.frame = frame++;
+        java.lang.System.arraycopy(camera.getViewProj().val, 0, back.viewProj, 0, 16);
+        renderables.forEach(copyRenderable);
+        spotlights.forEach(copySpotlight);
+        filling = null;
+        synchronized (this) {
+            RenderSnapshot done = back;
+            back = front;
+            front = done;
+            published = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Hands the latest complete snapshot to the renderer, which must give it back through {@link #release(RenderSnapshot)}.
+     * Publishing waits for the release before overwriting it.
+     *
+     * @return The snapshot, null if none was published yet
+     * @throws RuntimeException if the previous snapshot was not released
+     */
+    public synchronized RenderSnapshot acquire() {
+        if (reading != null) {
+            throw new RuntimeException("Snapshot already acquired!");
+        }
+        if (!published) return null;
+        reading = front;
+        return reading;
+    }
+
+    /**
+     * Gives back a snapshot obtained from {@link #acquire()}.
+     */
+    public synchronized void release(RenderSnapshot snapshot) {
+        if (snapshot != reading) {
+            throw new RuntimeException("Snapshot was not acquired!");
+        }
+        reading = null;
+        notifyAll();
+    }
+}
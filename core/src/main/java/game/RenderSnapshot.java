@@ -0,0 +1,181 @@
+package game;
+
+import util.Matrix4;
+import util.opengl.Material;
+import util.opengl.Mesh;
+
+import java.util.Arrays;
+
+/**
+ * Everything needed to draw one frame, copied out of the engine by a {@link RenderPublisher}: the view-projection
+ * matrix, one world matrix, mesh id and material id per drawn entity, and the spotlights.
+ * Read-only between {@link RenderPublisher#acquire()} and {@link RenderPublisher#release(RenderSnapshot)}.
+ * Arrays only grow, so once the scene stops growing filling a snapshot allocates nothing. Nothing is shared between
+ * snapshots.
+ */
+public final class RenderSnapshot {
+    /**
+     * Floats per light: position (3), rotation (3), spot angle, range, color (3), intensity
+     */
+    public static final int LIGHT_STRIDE = 12;
+
+    /**
+     * Frame number of the simulation step this snapshot was taken from
+     */
+    long frame;
+
+    final float[] viewProj = new float[16];
+
+    /**
+     * Number of drawn entities
+     */
+    int count;
+
+    /**
+     * worlds[16 * i .. 16 * i + 15] = world matrix (column major) of entity i
+     */
+    float[] worlds = new float[0];
+    int[] meshIds = new int[0];
+
+    /**
+     * -1 for meshes without a material
+     */
+    int[] materialIds = new int[0];
+
+    /**
+     * Meshes and materials by id, as seen when the snapshot was taken. Owned by this snapshot, so filling the other
+     * one never touches them.
+     */
+    Mesh[] meshes = new Mesh[0];
+    Material[] materials = new Material[0];
+
+    int lightCount;
+
+    /**
+     * lights[LIGHT_STRIDE * i ..] = data of light i, see {@link #LIGHT_STRIDE}
+     */
+    float[] lights = new float[0];
+
+    RenderSnapshot() {
+    }
+
+    /**
+     * Forget the drawn entities and lights, keeping the allocated capacity
+     */
+    void clear() {
+        count = 0;
+        lightCount = 0;
+    }
+
+    /**
+     * @return Position of a new entity
+     */
+    int addEntity() {
+        if (count == meshIds.length) {
+            int capacity = Math.max(16, count << 1);
+            worlds = Arrays.copyOf(worlds, capacity << 4);
+            meshIds = Arrays.copyOf(meshIds, capacity);
+            materialIds = Arrays.copyOf(materialIds, capacity);
+        }
+        return count++;
+    }
+
+    /**
+     * @return Id of the mesh, now known to this snapshot
+     */
+    int register(Mesh mesh) {
+        int id = mesh.getId();
+        if (id >= meshes.length) {
+            meshes = Arrays.copyOf(meshes, Math.max(id + 1, meshes.length << 1));
+        }
+        meshes[id] = mesh;
+        return id;
+    }
+
+    /**
+     * @return Id of the material, now known to this snapshot
+     */
+    int register(Material material) {
+        int id = material.getId();
+        if (id >= materials.length) {
+            materials = Arrays.copyOf(materials, Math.max(id + 1, materials.length << 1));
+        }
+        materials[id] = material;
+        return id;
+    }
+
+    /**
+     * @return Position of a new light
+     */
+    int addLight() {
+        if ((lightCount + 1) * LIGHT_STRIDE > lights.length) {
+            lights = Arrays.copyOf(lights, Math.max(4, lightCount << 1) * LIGHT_STRIDE);
+        }
+        return lightCount++;
+    }
+
+    public long getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return View-projection matrix (column major) of the camera
+     */
+    public float[] getViewProj() {
+        return viewProj;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return World matrices of the drawn entities, 16 floats each
+     */
+    public float[] getWorlds() {
+        return worlds;
+    }
+
+    /**
+     * Copies the world matrix of the i-th drawn entity.
+     *
+     * @return out for chaining
+     */
+    public Matrix4 getWorld(int i, Matrix4 out) {
+        System.arraycopy(worlds, i << 4, out.val, 0, 16);
+        return out;
+    }
+
+    public int[] getMeshIds() {
+        return meshIds;
+    }
+
+    public int[] getMaterialIds() {
+        return materialIds;
+    }
+
+    /**
+     * @return Mesh of the given id, see {@link Mesh#getId()}
+     */
+    public Mesh getMesh(int id) {
+        return meshes[id];
+    }
+
+    /**
+     * @return Material of the given id, see {@link Material#getId()}
+     */
+    public Material getMaterial(int id) {
+        return materials[id];
+    }
+
+    public int getLightCount() {
+        return lightCount;
+    }
+
+    /**
+     * @return Packed light data, {@link #LIGHT_STRIDE} floats per light
+     */
+    public float[] getLights() {
+        return lights;
+    }
+}
@@ -36,7 +36,9 @@ public class Root extends Game implements ScreenObserver {
      */
     @Override
     public void dispose() {
-
+        for (ScreenController screen : screens) {
+            screen.dispose();
+        }
     }
 
     @Override
@@ -4,7 +4,8 @@ import util.Matrix4;
 import util.opengl.Mesh;
 import util.opengl.Model;
 import util.opengl.Skybox;
-import util.opengl.attributes.FloatAttribute;
+import util.memory.FloatArena;
+import util.opengl.attributes.ArenaAttribute;
 
 import java.util.Arrays;
 import java.util.Random;
@@ -18,6 +19,11 @@ public class Space extends ScreenController {
 
     private final Random gen = new Random();
 
+    /**
+     * Instance matrices of the asteroids, uploaded from off-heap memory
+     */
+    private final FloatArena instances;
+
     public Space() {
         Model rock = new Model("assets/models/rock/rock.obj", "assets/models/rock");
         rock.setShader("rock");
@@ -26,17 +32,18 @@ public class Space extends ScreenController {
         float radius = 75f;
         int count = 5000;
         float offset = 25f;
-        Matrix4[] mats = new Matrix4[count];
+        instances = new FloatArena(16, count);
+        Matrix4 m = new Matrix4();
         for (int i = 0; i < count; i++) {
-            Matrix4 m = new Matrix4();
+            m.idt();
             m.translate(rand(-offset, offset), rand(-offset, offset), rand(-offset, offset));
             m.translate(radius * (float) Math.cos(2 * Math.PI * i / count), radius * 1.35f * (float) Math.sin(2 * Math.PI * i / count), 0);
             m.rotate(rand(0, (float) Math.PI * 2), rand(0, (float) Math.PI * 2), rand(0, (float) Math.PI * 2));
             m.scale(rand(0.75f, 1.25f), rand(0.75f, 1.25f), rand(0.75f, 1.25f));
-            mats[i] = m;
+            instances.set(instances.allocate(), 0, m.val, 0, 16);
         }
 
-        FloatAttribute instanceData = new FloatAttribute(mats, false, true);
+        ArenaAttribute instanceData = new ArenaAttribute(instances, count, false, true);
         for (Mesh mesh : rock.getMeshes()) {
             mesh.getGeo().addAttribute("aInstanceMatrix", instanceData);
         }
@@ -93,6 +100,6 @@ public class Space extends ScreenController {
 
     @Override
     public void dispose() {
-
+        instances.close();
     }
 }
@@ -0,0 +1,531 @@
+package game;
+
+import game.components.Camera;
+import game.components.Transform;
+import util.Matrix4;
+import util.Vector3;
+import util.ecs.Chunk;
+import util.ecs.Engine;
+import util.ecs.Entity;
+import util.ecs.Query;
+import util.ecs.System;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Spatial index over the positions of every entity with a {@link Transform}: a uniform grid of cubic cells, of which
+ * only the occupied ones are stored (in a hash table). Each entity is bounded by a sphere centered on its position,
+ * of radius the given radius times its largest scale, and sits in the cell holding its center; queries widen their
+ * search by the largest radius seen.
+ * <p>
+ * Updates are incremental: the grid tracks transforms (see {@link Engine#track(Class)}), so moving one through its
+ * setters, or setting a new one, stamps an ECS change, and a run only visits the entities with changed transforms.
+ * Transforms mutated in place through the vectors of their getters are not seen until their entity is marked changed.
+ * <p>
+ * Queries are allocation-free and may run concurrently with other systems, but must not be nested inside the action
+ * of another query, nor add, delete or move entities from it.
+ */
+public class SpatialGrid implements System {
+    /**
+     * Callback of ray queries
+     */
+    @FunctionalInterface
+    public interface Hit {
+        /**
+         * @param distance along the ray at which it enters the bounding sphere of the entity, 0 if it starts inside
+         */
+        void accept(Entity entity, float distance);
+    }
+
+    private static final long NONE = -1;
+
+    /**
+     * Marks an unused entry of the cell table, no packed cell coordinates are negative
+     */
+    private static final long EMPTY = -1;
+    private static final long MASK = (1 << 21) - 1;
+
+    private static final int BOX = 0, SPHERE = 1, FRUSTUM = 2, RAY = 3;
+
+    private final Engine engine;
+    /**
+     * Entities with a transform, only listened to for exits, and those whose transform changed since the last run
+     */
+    private final Query transforms, changes;
+    private final float cellSize, inverseCellSize, radius;
+    private final Consumer<Chunk> update;
+
+    // Indexed by entity slot, i.e. the low 32 bits of its handle
+    private long[] handles;
+    private Transform[] indexed;
+    private int[] versions;
+    private float[] xs, ys, zs, radii;
+    /**
+     * Entry of the cell table holding the entity and neighbours in the list of that cell, -1 for none
+     */
+    private int[] cellOf, next, prev;
+
+    /**
+     * Number of indexed entities
+     */
+    private int count;
+
+    /**
+     * Largest bounding radius seen, never shrinks
+     */
+    private float maxRadius;
+
+    /**
+     * Number of entities that changed cell during the last run
+     */
+    private int moved;
+
+    /**
+     * Open addressing table of occupied cells: keys[i] = packed cell coordinates (or EMPTY), heads[i] = slot of the first
+     * entity of the cell (or -1 once emptied). Emptied cells are dropped when the table grows.
+     */
+    private long[] keys;
+    private int[] heads;
+    private int cells;
+
+    /**
+     * Marks cells already visited by the current ray query
+     */
+    private int[] cellStamps;
+    private int stamp;
+
+    // Current query
+    private int shape;
+    private float ax, ay, az, bx, by, bz, r, length;
+    private final float[] planes = new float[24];
+    private final float[] inverse = new float[16], corner = new float[4];
+    private Consumer<Entity> action;
+    private Hit hit;
+
+    /**
+     * @param cellSize Edge of the cells, around the size of the entities or of the usual query works best
+     * @param radius   Radius of the bounding sphere of an entity at scale 1
+     */
+    public SpatialGrid(Engine engine, float cellSize, float radius) {
+        if (cellSize <= 0) {
+            throw new RuntimeException("Cell size must be positive!");
+        }
+        this.engine = engine;
+        this.cellSize = cellSize;
+        this.inverseCellSize = 1 / cellSize;
+        this.radius = radius;
+        this.handles = new long[0];
+        this.indexed = new Transform[0];
+        this.versions = new int[0];
+        this.xs = new float[0];
+        this.ys = new float[0];
+        this.zs = new float[0];
+        this.radii = new float[0];
+        this.cellOf = new int[0];
+        this.next = new int[0];
+        this.prev = new int[0];
+        this.keys = new long[16];
+        Arrays.fill(keys, EMPTY);
+        this.heads = new int[16];
+        this.cellStamps = new int[16];
+        this.update = chunk -> {
+            Entity[] entities = chunk.entities();
+            Object[] ts = chunk.objects(Transform.class);
+            for (int row = chunk.from(); row < chunk.to(); row++) {
+                update(entities[row].getHandle(), (Transform) ts[row]);
+            }
+        };
+        this.transforms = engine.query(Transform.class).onExit(this::remove);
+        this.changes = engine.query(Transform.class).changed(Transform.class);
+        engine.track(Transform.class);
+    }
+
+    /**
+     * Re-bins the entities whose transform changed since the last run
+     */
+    @Override
+    public synchronized void run(Engine engine, float delta) {
+        moved = 0;
+        changes.forEachChunk(update);
+    }
+
+    private void update(long handle, Transform transform) {
+        int slot = (int) handle;
+        if (slot >= handles.length) grow(slot + 1);
+        if (handles[slot] != handle) {
+            // New entity, possibly in the slot of one deleted since the last run
+            if (handles[slot] == NONE) count++;
+            else if (cellOf[slot] >= 0) unlink(slot);
+            handles[slot] = handle;
+            indexed[slot] = null;
+        }
+        // Versions are per Transform, a replaced one may have the same
+        if (indexed[slot] == transform && versions[slot] == transform.getVersion()) return;
+        indexed[slot] = transform;
+        versions[slot] = transform.getVersion();
+        Vector3 p = transform.getPosition(), s = transform.getScale();
+        xs[slot] = p.x;
+        ys[slot] = p.y;
+        zs[slot] = p.z;
+        radii[slot] = radius * Math.max(Math.abs(s.x), Math.max(Math.abs(s.y), Math.abs(s.z)));
+        maxRadius = Math.max(maxRadius, radii[slot]);
+        long key = key(cell(p.x), cell(p.y), cell(p.z));
+        if (cellOf[slot] >= 0 && keys[cellOf[slot]] == key) return;
+        if (cellOf[slot] >= 0) unlink(slot);
+        link(slot, insert(key));
+        moved++;
+    }
+
+    /**
+     * Drops an entity that stopped matching (deleted, or lost its transform)
+     */
+    private synchronized void remove(long handle) {
+        int slot = (int) handle;
+        if (slot >= handles.length || handles[slot] != handle) return;
+        if (cellOf[slot] >= 0) unlink(slot);
+        handles[slot] = NONE;
+        indexed[slot] = null;
+        count--;
+    }
+
+    private void grow(int size) {
+        int capacity = Math.max(size, handles.length << 1);
+        int old = handles.length;
+        handles = Arrays.copyOf(handles, capacity);
+        Arrays.fill(handles, old, capacity, NONE);
+        indexed = Arrays.copyOf(indexed, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        zs = Arrays.copyOf(zs, capacity);
+        radii = Arrays.copyOf(radii, capacity);
+        cellOf = Arrays.copyOf(cellOf, capacity);
+        Arrays.fill(cellOf, old, capacity, -1);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+    }
+
+    private void link(int slot, int cell) {
+        int head = heads[cell];
+        prev[slot] = -1;
+        next[slot] = head;
+        if (head >= 0) prev[head] = slot;
+        heads[cell] = slot;
+        cellOf[slot] = cell;
+    }
+
+    private void unlink(int slot) {
+        if (prev[slot] >= 0) next[prev[slot]] = next[slot];
+        else heads[cellOf[slot]] = next[slot];
+        if (next[slot] >= 0) prev[next[slot]] = prev[slot];
+        cellOf[slot] = -1;
+    }
+
+    private int cell(float coordinate) {
+        return (int) Math.floor(coordinate * inverseCellSize);
+    }
+
+    /**
+     * Packs cell coordinates, wrapping beyond 2^20 cells from the origin. Wrapped cells share entries, which only costs
+     * extra candidates: queries test every entity they visit.
+     */
+    private static long key(int cx, int cy, int cz) {
+        return (cx & MASK) << 42 | (cy & MASK) << 21 | cz & MASK;
+    }
+
+    private int probe(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ h >>> 32) & (keys.length - 1);
+    }
+
+    /**
+     * @return Entry of the cell, -1 if not in the table
+     */
+    private int find(long key) {
+        for (int i = probe(key); ; i = (i + 1) & (keys.length - 1)) {
+            if (keys[i] == key) return i;
+            if (keys[i] == EMPTY) return -1;
+        }
+    }
+
+    /**
+     * @return Entry of the cell, added if not in the table
+     */
+    private int insert(long key) {
+        int i = find(key);
+        if (i >= 0) return i;
+        if ((cells + 1) * 2 > keys.length) rehash();
+        for (i = probe(key); keys[i] != EMPTY; i = (i + 1) & (keys.length - 1)) ;
+        keys[i] = key;
+        heads[i] = -1;
+        cells++;
+        return i;
+    }
+
+    /**
+     * Rebuilds the table without the emptied cells, growing it if more than half the remaining cells would be used
+     */
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldHeads = heads;
+        int occupied = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY && oldHeads[i] >= 0) occupied++;
+        }
+        int capacity = oldKeys.length;
+        while ((occupied + 1) * 4 > capacity) capacity <<= 1;
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        heads = new int[capacity];
+        cellStamps = new int[capacity];
+        cells = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY || oldHeads[i] < 0) continue;
+            int j = probe(oldKeys[i]);
+            while (keys[j] != EMPTY) j = (j + 1) & (capacity - 1);
+            keys[j] = oldKeys[i];
+            heads[j] = oldHeads[i];
+            cells++;
+            for (int s = heads[j]; s >= 0; s = next[s]) cellOf[s] = j;
+        }
+    }
+
+    /**
+     * Calls action with every entity whose bounding sphere overlaps the box.
+     */
+    public synchronized void forEachInBox(Vector3 min, Vector3 max, Consumer<Entity> action) {
+        shape = BOX;
+        ax = min.x;
+        ay = min.y;
+        az = min.z;
+        bx = max.x;
+        by = max.y;
+        bz = max.z;
+        this.action = action;
+        visit(ax - maxRadius, ay - maxRadius, az - maxRadius, bx + maxRadius, by + maxRadius, bz + maxRadius);
+        this.action = null;
+    }
+
+    /**
+     * Calls action with every entity whose bounding sphere overlaps the sphere.
+     */
+    public synchronized void forEachInSphere(Vector3 center, float radius, Consumer<Entity> action) {
+        shape = SPHERE;
+        ax = center.x;
+        ay = center.y;
+        az = center.z;
+        r = radius;
+        this.action = action;
+        float reach = radius + maxRadius;
+        visit(ax - reach, ay - reach, az - reach, ax + reach, ay + reach, az + reach);
+        this.action = null;
+    }
+
+    /**
+     * Calls action with every entity whose bounding sphere is at least partly inside the frustum of the
+     * view-projection matrix (e.g. {@link Camera#getViewProj()}), for culling.
+     */
+    public synchronized void forEachInFrustum(Matrix4 viewProj, Consumer<Entity> action) {
+        shape = FRUSTUM;
+        float[] m = viewProj.val;
+        // Planes are row 3 +- rows 0, 1, 2 of the matrix (left, right, bottom, top, near, far)
+        for (int p = 0; p < 6; p++) {
+            int row = p >> 1;
+            float sign = (p & 1) == 0 ? 1 : -1;
+            float a = m[3] + sign * m[row], b = m[7] + sign * m[4 + row];
+            float c = m[11] + sign * m[8 + row], d = m[15] + sign * m[12 + row];
+            float norm = (float) Math.sqrt(a * a + b * b + c * c);
+            planes[p * 4] = a / norm;
+            planes[p * 4 + 1] = b / norm;
+            planes[p * 4 + 2] = c / norm;
+            planes[p * 4 + 3] = d / norm;
+        }
+        this.action = action;
+        // Bounds of the frustum: its corners are the corners of the clip cube brought back to world space
+        java.lang.System.arraycopy(m, 0, inverse, 0, 16);
+        if (!Matrix4.inv(inverse)) {
+            visit(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY,
+                    Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+        } else {
+            float minX = Float.POSITIVE_INFINITY, minY = minX, minZ = minX, maxX = -minX, maxY = maxX, maxZ = maxX;
+            for (int i = 0; i < 8; i++) {
+                corner[0] = (i & 1) == 0 ? -1 : 1;
+                corner[1] = (i & 2) == 0 ? -1 : 1;
+                corner[2] = (i & 4) == 0 ? -1 : 1;
+                corner[3] = 1;
+                Matrix4.mulVecHmg(inverse, corner);
+                minX = Math.min(minX, corner[0]);
+                minY = Math.min(minY, corner[1]);
+                minZ = Math.min(minZ, corner[2]);
+                maxX = Math.max(maxX, corner[0]);
+                maxY = Math.max(maxY, corner[1]);
+                maxZ = Math.max(maxZ, corner[2]);
+            }
+            visit(minX - maxRadius, minY - maxRadius, minZ - maxRadius, maxX + maxRadius, maxY + maxRadius, maxZ + maxRadius);
+        }
+        this.action = null;
+    }
+
+    /**
+     * Calls hit with every entity whose bounding sphere the segment [origin, origin + length * direction] crosses,
+     * for picking. Entities are not sorted by distance.
+     */
+    public synchronized void forEachOnRay(Vector3 origin, Vector3 direction, float length, Hit hit) {
+        float norm = direction.len();
+        if (norm == 0) {
+            throw new RuntimeException("Ray has no direction!");
+        }
+        shape = RAY;
+        ax = origin.x;
+        ay = origin.y;
+        az = origin.z;
+        bx = direction.x / norm;
+        by = direction.y / norm;
+        bz = direction.z / norm;
+        this.length = length;
+        this.hit = hit;
+        int reach = (int) Math.ceil(maxRadius * inverseCellSize);
+        long side = 2L * reach + 1;
+        long steps = 1 + (long) Math.ceil(length * inverseCellSize * (Math.abs(bx) + Math.abs(by) + Math.abs(bz)));
+        if (steps * side * side * side > keys.length + count) {
+            // Walking the ray would look at more cells than there are
+            scanAll();
+        } else {
+            walk(reach);
+        }
+        this.hit = null;
+    }
+
+    /**
+     * Visits the cells the ray crosses (Amanatides and Woo), and their neighbours within reach cells.
+     */
+    private void walk(int reach) {
+        if (++stamp == 0) {
+            Arrays.fill(cellStamps, 0);
+            stamp = 1;
+        }
+        int cx = cell(ax), cy = cell(ay), cz = cell(az);
+        int stepX = bx > 0 ? 1 : -1, stepY = by > 0 ? 1 : -1, stepZ = bz > 0 ? 1 : -1;
+        float inf = Float.POSITIVE_INFINITY;
+        float maxX = bx == 0 ? inf : ((cx + (bx > 0 ? 1 : 0)) * cellSize - ax) / bx;
+        float maxY = by == 0 ? inf : ((cy + (by > 0 ? 1 : 0)) * cellSize - ay) / by;
+        float maxZ = bz == 0 ? inf : ((cz + (bz > 0 ? 1 : 0)) * cellSize - az) / bz;
+        float deltaX = bx == 0 ? inf : cellSize / Math.abs(bx);
+        float deltaY = by == 0 ? inf : cellSize / Math.abs(by);
+        float deltaZ = bz == 0 ? inf : cellSize / Math.abs(bz);
+        float t = 0;
+        while (t <= length) {
+            for (int x = cx - reach; x <= cx + reach; x++) {
+                for (int y = cy - reach; y <= cy + reach; y++) {
+                    for (int z = cz - reach; z <= cz + reach; z++) {
+                        int cell = find(key(x, y, z));
+                        if (cell >= 0 && cellStamps[cell] != stamp) {
+                            cellStamps[cell] = stamp;
+                            visitCell(cell);
+                        }
+                    }
+                }
+            }
+            if (maxX < maxY && maxX < maxZ) {
+                t = maxX;
+                maxX += deltaX;
+                cx += stepX;
+            } else if (maxY < maxZ) {
+                t = maxY;
+                maxY += deltaY;
+                cy += stepY;
+            } else {
+                t = maxZ;
+                maxZ += deltaZ;
+                cz += stepZ;
+            }
+        }
+    }
+
+    /**
+     * Visits the cells in the given bounds, or every occupied cell if looking them up would cost more
+     */
+    private void visit(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int x0 = cell(minX), y0 = cell(minY), z0 = cell(minZ);
+        int x1 = cell(maxX), y1 = cell(maxY), z1 = cell(maxZ);
+        long volume = ((long) x1 - x0 + 1) * ((long) y1 - y0 + 1) * ((long) z1 - z0 + 1);
+        if (volume > keys.length + count) {
+            scanAll();
+            return;
+        }
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                for (int z = z0; z <= z1; z++) {
+                    int cell = find(key(x, y, z));
+                    if (cell >= 0) visitCell(cell);
+                }
+            }
+        }
+    }
+
+    private void scanAll() {
+        for (int cell = 0; cell < keys.length; cell++) {
+            if (keys[cell] != EMPTY) visitCell(cell);
+        }
+    }
+
+    private void visitCell(int cell) {
+        for (int s = heads[cell]; s >= 0; s = next[s]) {
+            float x = xs[s], y = ys[s], z = zs[s], rad = radii[s];
+            switch (shape) {
+                case BOX -> {
+                    float dx = Math.max(0, Math.max(ax - x, x - bx));
+                    float dy = Math.max(0, Math.max(ay - y, y - by));
+                    float dz = Math.max(0, Math.max(az - z, z - bz));
+                    if (dx * dx + dy * dy + dz * dz <= rad * rad) emit(s);
+                }
+                case SPHERE -> {
+                    float dx = x - ax, dy = y - ay, dz = z - az, reach = r + rad;
+                    if (dx * dx + dy * dy + dz * dz <= reach * reach) emit(s);
+                }
+                case FRUSTUM -> {
+                    boolean inside = true;
+                    for (int p = 0; p < 24 && inside; p += 4) {
+                        inside = planes[p] * x + planes[p + 1] * y + planes[p + 2] * z + planes[p + 3] >= -rad;
+                    }
+                    if (inside) emit(s);
+                }
+                case RAY -> {
+                    float px = x - ax, py = y - ay, pz = z - az;
+                    float along = px * bx + py * by + pz * bz;
+                    float away = px * px + py * py + pz * pz - along * along;
+                    if (away > rad * rad) continue;
+                    float half = (float) Math.sqrt(rad * rad - away);
+                    if (along + half < 0 || along - half > length) continue;
+                    Entity entity = engine.getEntity(handles[s]);
+                    if (entity != null) hit.accept(entity, Math.max(0, along - half));
+                }
+            }
+        }
+    }
+
+    private void emit(int slot) {
+        // Deleted since the last run, the exit event was not delivered yet
+        Entity entity = engine.getEntity(handles[slot]);
+        if (entity != null) action.accept(entity);
+    }
+
+    /**
+     * @return Number of indexed entities
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return Number of entities that changed cell during the last run
+     */
+    public int getMoved() {
+        return moved;
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+}
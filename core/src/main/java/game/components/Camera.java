@@ -89,4 +89,16 @@ public class Camera {
     public float getFovy() {
         return fovy;
     }
+
+    public float getNear() {
+        return near;
+    }
+
+    public float getFar() {
+        return far;
+    }
+
+    public float getAsp() {
+        return asp;
+    }
 }
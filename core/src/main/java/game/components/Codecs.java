@@ -0,0 +1,101 @@
+package game.components;
+
+import util.Vector3;
+import util.ecs.Codec;
+import util.ecs.Snapshot;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary encodings of the game components, for {@link Snapshot}.
+ */
+public final class Codecs {
+    public static final Codec<Transform> TRANSFORM = new Codec<>() {
+        @Override
+        public int size() {
+            return 36;
+        }
+
+        @Override
+        public void write(Transform transform, ByteBuffer buffer) {
+            putVec(transform.getPosition(), buffer);
+            putVec(transform.getRotation(), buffer);
+            putVec(transform.getScale(), buffer);
+        }
+
+        @Override
+        public Transform read(ByteBuffer buffer) {
+            return new Transform(getVec(buffer), getVec(buffer), getVec(buffer));
+        }
+    };
+
+    public static final Codec<Camera> CAMERA = new Codec<>() {
+        @Override
+        public int size() {
+            return 40;
+        }
+
+        @Override
+        public void write(Camera camera, ByteBuffer buffer) {
+            putVec(camera.getTransform().getPosition(), buffer);
+            putVec(camera.getTransform().getRotation(), buffer);
+            buffer.putFloat(camera.getNear());
+            buffer.putFloat(camera.getFar());
+            buffer.putFloat(camera.getFovy());
+            buffer.putFloat(camera.getAsp());
+        }
+
+        @Override
+        public Camera read(ByteBuffer buffer) {
+            return new Camera(getVec(buffer), getVec(buffer), buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+        }
+    };
+
+    public static final Codec<Spotlight> SPOTLIGHT = new Codec<>() {
+        @Override
+        public int size() {
+            return 48;
+        }
+
+        @Override
+        public void write(Spotlight light, ByteBuffer buffer) {
+            putVec(light.getTransform().getPosition(), buffer);
+            putVec(light.getTransform().getRotation(), buffer);
+            buffer.putFloat(light.getSpotAngle());
+            buffer.putFloat(light.range);
+            putVec(light.color, buffer);
+            buffer.putFloat(light.intensity);
+        }
+
+        @Override
+        public Spotlight read(ByteBuffer buffer) {
+            Spotlight light = new Spotlight(getVec(buffer), getVec(buffer), buffer.getFloat(), buffer.getFloat());
+            light.color = getVec(buffer);
+            light.intensity = buffer.getFloat();
+            return light;
+        }
+    };
+
+    private Codecs() {
+    }
+
+    /**
+     * @return Snapshot saving every game component with a codec
+     */
+    public static Snapshot snapshot() {
+        return new Snapshot()
+                .register(Transform.class, TRANSFORM)
+                .register(Camera.class, CAMERA)
+                .register(Spotlight.class, SPOTLIGHT);
+    }
+
+    private static void putVec(Vector3 vector, ByteBuffer buffer) {
+        buffer.putFloat(vector.x);
+        buffer.putFloat(vector.y);
+        buffer.putFloat(vector.z);
+    }
+
+    private static Vector3 getVec(ByteBuffer buffer) {
+        return new Vector3(buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+    }
+}
@@ -0,0 +1,88 @@
+package game.components;
+
+import java.util.Arrays;
+
+/**
+ * Component placing the entity in a scene graph: its world matrix is the world matrix of its parent times its own
+ * model matrix (see {@link Transform#getModel()}). Link entities through {@link game.HierarchySystem#attach}.
+ */
+public class Hierarchy {
+    /**
+     * Handle of no entity
+     */
+    public static final long NONE = -1;
+
+    /**
+     * Handle of the parent entity, NONE for roots
+     */
+    long parent = NONE;
+
+    /**
+     * Handles of the child entities
+     */
+    long[] children = new long[0];
+    int childCount;
+
+    /**
+     * Position of the world matrix of the entity in {@link game.HierarchySystem#getWorldMatrices()}, -1 until placed
+     */
+    int index = -1;
+
+    public long getParent() {
+        return parent;
+    }
+
+    /**
+     * Only sets the handle, link entities through {@link game.HierarchySystem#attach} instead.
+     */
+    public void setParent(long parent) {
+        this.parent = parent;
+    }
+
+    public int getChildCount() {
+        return childCount;
+    }
+
+    /**
+     * @return Handle of the i-th child
+     */
+    public long getChild(int i) {
+        return children[i];
+    }
+
+    /**
+     * @return Position of the world matrix of the entity (in matrices, not floats), -1 until the hierarchy system ran
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Set by {@link game.HierarchySystem} when laying nodes out
+     */
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    /**
+     * Only records the handle, link entities through {@link game.HierarchySystem#attach} instead.
+     */
+    public void addChild(long child) {
+        if (childCount == children.length) {
+            children = Arrays.copyOf(children, Math.max(4, childCount << 1));
+        }
+        children[childCount++] = child;
+    }
+
+    /**
+     * Only forgets the handle, unlink entities through {@link game.HierarchySystem#detach} instead.
+     */
+    public void removeChild(long child) {
+        for (int i = 0; i < childCount; i++) {
+            if (children[i] == child) {
+                children[i] = children[--childCount];
+                return;
+            }
+        }
+    }
+}
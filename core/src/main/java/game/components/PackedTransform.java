@@ -0,0 +1,71 @@
+package game.components;
+
+import util.BatchMath;
+import util.Matrix4;
+import util.Vector3;
+import util.ecs.Chunk;
+import util.ecs.ComponentRegistry;
+import util.ecs.Packed;
+
+/**
+ * Struct-of-arrays variant of {@link Transform}: position, rotation (euler angles), scale and the model matrix are
+ * stored in one float column each, see {@link Packed}. The layout keeps the model matrix in 16 consecutive columns.
+ * Update the model matrices of a whole chunk at once with {@link #updateModels(Chunk)}.
+ */
+@Packed.Layout({"x", "y", "z", "rotX", "rotY", "rotZ", "scaleX", "scaleY", "scaleZ",
+        "m00", "m10", "m20", "m30", "m01", "m11", "m21", "m31", "m02", "m12", "m22", "m32", "m03", "m13", "m23", "m33"})
+public class PackedTransform implements Packed {
+    public float x, y, z;
+    public float rotX, rotY, rotZ;
+    public float scaleX = 1, scaleY = 1, scaleZ = 1;
+    // Model matrix, column major
+    public float m00, m10, m20, m30, m01, m11, m21, m31, m02, m12, m22, m32, m03, m13, m23, m33 = 1;
+
+    /**
+     * Columns of the fields in {@link Chunk#floats(Class)}
+     */
+    public static final int X = field("x"), Y = field("y"), Z = field("z"),
+            ROT_X = field("rotX"), ROT_Y = field("rotY"), ROT_Z = field("rotZ"),
+            SCALE_X = field("scaleX"), SCALE_Y = field("scaleY"), SCALE_Z = field("scaleZ"),
+            MODEL = field("m00");
+
+    private static int field(String name) {
+        return ComponentRegistry.field(PackedTransform.class, name);
+    }
+
+    public PackedTransform() {
+    }
+
+    public PackedTransform(Vector3 position, Vector3 rotation, Vector3 scale) {
+        x = position.x;
+        y = position.y;
+        z = position.z;
+        rotX = rotation.x;
+        rotY = rotation.y;
+        rotZ = rotation.z;
+        scaleX = scale.x;
+        scaleY = scale.y;
+        scaleZ = scale.z;
+    }
+
+    /**
+     * Recomputes the model matrix (Translation * Rotation * Scale) of every row of the chunk, like {@link Transform#getModel()}.
+     */
+    public static void updateModels(Chunk chunk) {
+        // The @Packed.Layout of this class puts x to scaleZ in the order BatchMath expects, then the model columns
+        BatchMath.compose(chunk.floats(PackedTransform.class), X, MODEL, chunk.from(), chunk.to());
+    }
+
+    /**
+     * Copies the model matrix of a row of the chunk, as computed by the last {@link #updateModels(Chunk)}.
+     *
+     * @return out for chaining
+     */
+    public static Matrix4 getModel(Chunk chunk, int row, Matrix4 out) {
+        float[][] f = chunk.floats(PackedTransform.class);
+        for (int i = 0; i < 16; i++) {
+            out.val[i] = f[MODEL + i][row];
+        }
+        return out;
+    }
+}
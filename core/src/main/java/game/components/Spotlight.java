@@ -17,6 +17,13 @@ public class Spotlight extends Light {
         return camera.getTransform();
     }
 
+    /**
+     * @return Full angle of the spot, in radians
+     */
+    public float getSpotAngle() {
+        return camera.getFovy() * 2;
+    }
+
     public Matrix4 getViewProj() {
         return camera.getViewProj();
     }
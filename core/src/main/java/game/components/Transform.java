@@ -2,11 +2,15 @@ package game.components;
 
 import util.Matrix4;
 import util.Vector3;
+import util.ecs.Engine;
+import util.ecs.Entity;
+import util.ecs.Tracked;
 
 /**
- * Component holding the transform of the entity.
+ * Component holding the transform of the entity. Changes made through the setters are stamped as ECS changes once
+ * the engine tracks transforms (see {@link Engine#track(Class)}), for queries filtering on them.
  */
-public class Transform {
+public class Transform implements Tracked {
     private Vector3 position;
     // euler angles
     private Vector3 rotation;
@@ -15,6 +19,17 @@ public class Transform {
     private Matrix4 modelCache;
     boolean dirty;
 
+    /**
+     * Incremented on every change, lets systems caching results derived from this transform detect changes
+     */
+    private int version;
+
+    /**
+     * Engine and handle of the entity holding this transform, engine is null if unbound
+     */
+    private Engine engine;
+    private long entity;
+
     public Transform(Vector3 position, Vector3 rotation, Vector3 scale) {
         this.position = position;
         this.rotation = rotation;
@@ -32,6 +47,8 @@ public class Transform {
 
     public void setPosition(Vector3 position) {
         this.dirty = true;
+        this.version++;
+        markChanged();
         this.position = position;
     }
 
@@ -44,6 +61,8 @@ public class Transform {
 
     public void setRotation(Vector3 rotation) {
         this.dirty = true;
+        this.version++;
+        markChanged();
         this.rotation = rotation;
     }
 
@@ -56,9 +75,36 @@ public class Transform {
 
     public void setScale(Vector3 scale) {
         this.dirty = true;
+        this.version++;
+        markChanged();
         this.scale = scale;
     }
 
+    private void markChanged() {
+        Engine engine = this.engine;
+        if (engine == null) return;
+        Entity holder = engine.getEntity(entity);
+        if (holder != null) holder.markChanged(Transform.class);
+    }
+
+    @Override
+    public void attached(Engine engine, long entity) {
+        this.engine = engine;
+        this.entity = entity;
+    }
+
+    @Override
+    public void detached(long entity) {
+        if (this.entity == entity) this.engine = null;
+    }
+
+    /**
+     * @return Number of changes made through the setters so far
+     */
+    public int getVersion() {
+        return version;
+    }
+
     /**
      * Please do not mutate the returned matrix from this method.
      *
@@ -76,4 +122,34 @@ public class Transform {
         // else unchanged
         return modelCache;
     }
+
+    /**
+     * Computes the model matrix (Translation * Rotation * Scale, column major) into out at offset, without touching
+     * the cached one of {@link #getModel()}: safe for systems that only read transforms, even concurrently.
+     *
+     * @return out for chaining
+     */
+    public float[] getModel(float[] out, int offset) {
+        float sX = (float) Math.sin(rotation.x), cX = (float) Math.cos(rotation.x);
+        float sY = (float) Math.sin(rotation.y), cY = (float) Math.cos(rotation.y);
+        float sZ = (float) Math.sin(rotation.z), cZ = (float) Math.cos(rotation.z);
+        // Columns of Z * Y * X scaled by the scale, see Matrix4.rotate_xyz
+        out[offset] = cY * cZ * scale.x;
+        out[offset + 1] = cY * sZ * scale.x;
+        out[offset + 2] = -sY * scale.x;
+        out[offset + 3] = 0;
+        out[offset + 4] = (sX * sY * cZ - cX * sZ) * scale.y;
+        out[offset + 5] = (sX * sY * sZ + cX * cZ) * scale.y;
+        out[offset + 6] = sX * cY * scale.y;
+        out[offset + 7] = 0;
+        out[offset + 8] = (cX * sY * cZ + sX * sZ) * scale.z;
+        out[offset + 9] = (cX * sY * sZ - sX * cZ) * scale.z;
+        out[offset + 10] = cX * cY * scale.z;
+        out[offset + 11] = 0;
+        out[offset + 12] = position.x;
+        out[offset + 13] = position.y;
+        out[offset + 14] = position.z;
+        out[offset + 15] = 1;
+        return out;
+    }
 }
@@ -0,0 +1,198 @@
+package util;
+
+import static util.Matrix4.*;
+
+/**
+ * Math on many matrices, points or spheres at once, packed back to back in float arrays (matrices column major, like
+ * {@link Matrix4#val}). Backed by SIMD kernels on the incubating Vector API when the JVM runs with
+ * {@code --add-modules jdk.incubator.vector}, and by scalar code otherwise (or when {@code -Dbatchmath.scalar=true}).
+ * Both give the same results, except for the sines and cosines of {@link #compose} which may differ by an ulp.
+ * <p>
+ * Outputs may be the inputs themselves, at the same offset.
+ */
+public final class BatchMath {
+    /**
+     * Implementation of the operations, arguments are checked by the facade
+     */
+    interface Kernels {
+        void mul(float[] m, float[] mats, int offset, float[] out, int outOffset, int count);
+
+        void compose(float[][] columns, int trs, int model, int from, int to);
+
+        void transformPoints(float[] m, float[] points, int offset, float[] out, int outOffset, int count);
+
+        int cullSpheres(float[] planes, int planeCount, float[] spheres, int offset, int count, int[] visible);
+    }
+
+    static final Kernels SCALAR = new Scalar();
+
+    /**
+     * Null if the Vector API is not available
+     */
+    static final Kernels VECTOR = loadVector();
+
+    private static final Kernels KERNELS = VECTOR != null && !Boolean.getBoolean("batchmath.scalar") ? VECTOR : SCALAR;
+
+    private BatchMath() {
+    }
+
+    /**
+     * @return SIMD kernels, null without the module or on CPUs with less than 4 float lanes
+     */
+    private static Kernels loadVector() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return null;
+        try {
+            // Loaded reflectively so this class never links against the incubator module
+            Class<?> kernels = Class.forName("util.VectorKernels");
+            if (!(Boolean) kernels.getDeclaredMethod("isSupported").invoke(null)) return null;
+            return (Kernels) kernels.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return Whether the SIMD kernels are in use
+     */
+    public static boolean isVectorized() {
+        return KERNELS != SCALAR;
+    }
+
+    /**
+     * Multiplies count matrices by m from the left: out[i] = m * mats[i], e.g. view-projection * model.
+     * Same as {@link Matrix4#mul(float[], int, float[], int, float[], int)} on each matrix.
+     *
+     * @param offset    Index of the first float of the first matrix in mats
+     * @param outOffset Index of the first float of the first result in out
+     */
+    public static void mul(float[] m, float[] mats, int offset, float[] out, int outOffset, int count) {
+        check(m.length >= 16, "Matrix needs 16 floats!");
+        check(mats, offset, count * 16);
+        check(out, outOffset, count * 16);
+        KERNELS.mul(m, mats, offset, out, outOffset, count);
+    }
+
+    /**
+     * Computes model matrices (Translation * Rotation * Scale, rotation as in {@link Matrix4#rotate_xyz}) of the rows
+     * [from, to) of float columns, e.g. those of {@link util.ecs.Chunk#floats(Class)}.
+     *
+     * @param trs   First of the 9 columns holding x, y, z, rotation x, y, z (radians) and scale x, y, z
+     * @param model First of the 16 columns receiving the matrices, column major
+     */
+    public static void compose(float[][] columns, int trs, int model, int from, int to) {
+        check(trs >= 0 && trs + 9 <= columns.length && model >= 0 && model + 16 <= columns.length, "Columns out of bounds!");
+        for (int c = 0; c < 9; c++) check(columns[trs + c], from, to - from);
+        for (int c = 0; c < 16; c++) check(columns[model + c], from, to - from);
+        KERNELS.compose(columns, trs, model, from, to);
+    }
+
+    /**
+     * Transforms count points (x, y, z packed) by m, as positions (w = 1).
+     * Same as {@link Matrix4#mulVec(float[], float[])} on each point.
+     */
+    public static void transformPoints(float[] m, float[] points, int offset, float[] out, int outOffset, int count) {
+        check(m.length >= 16, "Matrix needs 16 floats!");
+        check(points, offset, count * 3);
+        check(out, outOffset, count * 3);
+        KERNELS.transformPoints(m, points, offset, out, outOffset, count);
+    }
+
+    /**
+     * Tests count spheres (x, y, z, radius packed) against planes (a, b, c, d packed, normals pointing inwards and
+     * normalized), e.g. the 6 planes of a frustum. A sphere is visible unless it lies fully behind one of the planes.
+     *
+     * @param visible Receives the indices (from 0) of the visible spheres, in increasing order. Must hold count ints.
+     * @return Number of visible spheres
+     */
+    public static int cullSpheres(float[] planes, int planeCount, float[] spheres, int offset, int count, int[] visible) {
+        check(planes, 0, planeCount * 4);
+        check(spheres, offset, count * 4);
+        check(visible.length >= count, "Visible indices need room for every sphere!");
+        return KERNELS.cullSpheres(planes, planeCount, spheres, offset, count, visible);
+    }
+
+    private static void check(float[] array, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > array.length) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + (offset + length) + ") outside of array of " + array.length + "!");
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new RuntimeException(message);
+        }
+    }
+
+    /**
+     * Plain loops, the reference the SIMD kernels are compared against
+     */
+    static final class Scalar implements Kernels {
+        @Override
+        public void mul(float[] m, float[] mats, int offset, float[] out, int outOffset, int count) {
+            for (int i = 0; i < count; i++) {
+                Matrix4.mul(m, 0, mats, offset + (i << 4), out, outOffset + (i << 4));
+            }
+        }
+
+        @Override
+        public void compose(float[][] f, int trs, int model, int from, int to) {
+            float[] x = f[trs], y = f[trs + 1], z = f[trs + 2];
+            float[] rx = f[trs + 3], ry = f[trs + 4], rz = f[trs + 5];
+            float[] sx = f[trs + 6], sy = f[trs + 7], sz = f[trs + 8];
+            float[] m00 = f[model], m10 = f[model + 1], m20 = f[model + 2], m30 = f[model + 3];
+            float[] m01 = f[model + 4], m11 = f[model + 5], m21 = f[model + 6], m31 = f[model + 7];
+            float[] m02 = f[model + 8], m12 = f[model + 9], m22 = f[model + 10], m32 = f[model + 11];
+            float[] m03 = f[model + 12], m13 = f[model + 13], m23 = f[model + 14], m33 = f[model + 15];
+            for (int r = from; r < to; r++) {
+                float sX = (float) Math.sin(rx[r]), cX = (float) Math.cos(rx[r]);
+                float sY = (float) Math.sin(ry[r]), cY = (float) Math.cos(ry[r]);
+                float sZ = (float) Math.sin(rz[r]), cZ = (float) Math.cos(rz[r]);
+                // Columns of Z * Y * X scaled by the scale, see Matrix4.rotate_xyz
+                m00[r] = cY * cZ * sx[r];
+                m10[r] = cY * sZ * sx[r];
+                m20[r] = -sY * sx[r];
+                m30[r] = 0;
+                m01[r] = (sX * sY * cZ - cX * sZ) * sy[r];
+                m11[r] = (sX * sY * sZ + cX * cZ) * sy[r];
+                m21[r] = sX * cY * sy[r];
+                m31[r] = 0;
+                m02[r] = (cX * sY * cZ + sX * sZ) * sz[r];
+                m12[r] = (cX * sY * sZ - sX * cZ) * sz[r];
+                m22[r] = cX * cY * sz[r];
+                m32[r] = 0;
+                m03[r] = x[r];
+                m13[r] = y[r];
+                m23[r] = z[r];
+                m33[r] = 1;
+            }
+        }
+
+        @Override
+        public void transformPoints(float[] m, float[] points, int offset, float[] out, int outOffset, int count) {
+            for (int i = 0; i < count; i++) {
+                int p = offset + i * 3, o = outOffset + i * 3;
+                float px = points[p], py = points[p + 1], pz = points[p + 2];
+                out[o] = px * m[M00] + py * m[M01] + pz * m[M02] + m[M03];
+                out[o + 1] = px * m[M10] + py * m[M11] + pz * m[M12] + m[M13];
+                out[o + 2] = px * m[M20] + py * m[M21] + pz * m[M22] + m[M23];
+            }
+        }
+
+        @Override
+        public int cullSpheres(float[] planes, int planeCount, float[] spheres, int offset, int count, int[] visible) {
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                if (inside(planes, planeCount, spheres, offset + (i << 2))) visible[n++] = i;
+            }
+            return n;
+        }
+
+        static boolean inside(float[] planes, int planeCount, float[] spheres, int s) {
+            float x = spheres[s], y = spheres[s + 1], z = spheres[s + 2], r = spheres[s + 3];
+            for (int p = 0; p < planeCount << 2; p += 4) {
+                if (x * planes[p] + y * planes[p + 1] + z * planes[p + 2] + planes[p + 3] < -r) return false;
+            }
+            return true;
+        }
+    }
+}
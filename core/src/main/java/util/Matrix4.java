@@ -659,6 +659,19 @@ public class Matrix4 {
         mata[M33] = m33;
     }
 
+    /**
+     * Multiplies the matrices stored at offsets of packed arrays, storing a * b at offset outOff of out (which must not
+     * overlap the inputs). Lets matrices live back to back in a single buffer.
+     */
+    public static void mul(float[] a, int aOff, float[] b, int bOff, float[] out, int outOff) {
+        for (int col = 0; col < 4; col++) {
+            float b0 = b[bOff + col * 4], b1 = b[bOff + col * 4 + 1], b2 = b[bOff + col * 4 + 2], b3 = b[bOff + col * 4 + 3];
+            for (int row = 0; row < 4; row++) {
+                out[outOff + col * 4 + row] = a[aOff + row] * b0 + a[aOff + 4 + row] * b1 + a[aOff + 8 + row] * b2 + a[aOff + 12 + row] * b3;
+            }
+        }
+    }
+
     /**
      * Multiplies the vector with the given matrix. The matrix array is assumed to hold a 4x4 column major matrix as you can get
      * from {@link Matrix4#val}. The vector array is assumed to hold a 3-component vector, with x being the first element, y being
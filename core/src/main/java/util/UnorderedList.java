@@ -3,6 +3,7 @@ package util;
 import util.ecs.Identifiable;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -19,11 +20,6 @@ public class UnorderedList<T extends Identifiable> extends AbstractList<T> imple
     Object[] elements;
     private int size;
 
-    /**
-     * Iterator cache
-     */
-    private final Itr itr = new Itr();
-
     public UnorderedList() {
         this(10);
     }
@@ -53,6 +49,7 @@ public class UnorderedList<T extends Identifiable> extends AbstractList<T> imple
         return elements[o.getId()] == o;
     }
 
+    @SuppressWarnings("unchecked")
     public T get(int index) {
         checkBounds(index);
         return (T) elements[index];
@@ -61,6 +58,7 @@ public class UnorderedList<T extends Identifiable> extends AbstractList<T> imple
     public T set(int index, T element) {
         T tmp = get(index);
         elements[index] = element;
+        tmp.setId(-1);
         element.setId(index);
         return tmp;
     }
@@ -78,10 +76,11 @@ public class UnorderedList<T extends Identifiable> extends AbstractList<T> imple
         }
         // always just append
         elements[size()] = element;
-        element.setId(index);
+        element.setId(size());
         size++;
     }
 
+    @SuppressWarnings("unchecked")
     public T remove(int index) {
         Object[] es = this.elements;
         T tmp = get(index);
@@ -92,8 +91,10 @@ public class UnorderedList<T extends Identifiable> extends AbstractList<T> imple
             // We swap with the end
             es[index] = es[size() - 1];
             es[size() - 1] = null;
+            ((T) es[index]).setId(index);
         }
         size--;
+        tmp.setId(-1);
         return tmp;
     }
 
@@ -132,58 +133,120 @@ public class UnorderedList<T extends Identifiable> extends AbstractList<T> imple
         elements = Arrays.copyOf(elements, newCapacity);
     }
 
+    /**
+     * Splits evenly in halves, so parallel streams balance well.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return Spliterators.spliterator(elements, 0, size, Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL);
+    }
+
+    @Override
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
     @Override
     public Stream<T> stream() {
-        Stream<T> stream = StreamSupport.stream(
-                Spliterators.spliteratorUnknownSize(
-                        iterator(),
-                        Spliterator.ORDERED)
-                , false);
+        return StreamSupport.stream(spliterator(), false);
+    }
 
-        return super.stream();
+    /**
+     * Performs the action for every element. Allocation-free and re-entrant.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super T> action) {
+        Object[] es = elements;
+        for (int i = 0; i < size; i++) {
+            action.accept((T) es[i]);
+        }
     }
 
     /**
-     * Note this returns a reference of a pre-allocated instance. Therefore, do not nest iterators!
+     * Callback of {@link #forEachIndexed(IndexedConsumer)}
+     */
+    @FunctionalInterface
+    public interface IndexedConsumer<T> {
+        void accept(int index, T element);
+    }
+
+    /**
+     * Performs the action for every element along with its index. Allocation-free and re-entrant.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachIndexed(IndexedConsumer<? super T> action) {
+        Object[] es = elements;
+        for (int i = 0; i < size; i++) {
+            action.accept(i, (T) es[i]);
+        }
+    }
+
+    /**
+     * Each call returns a new iterator, so loops may be nested. Allocation-free loops can reuse a {@link #cursor()} instead.
      */
     public Iterator<T> iterator() {
-        itr.reset();
-        return itr;
+        return new Cursor();
     }
 
-    private class Itr implements Iterator<T> {
+    /**
+     * @return A new cursor over this list. Keep it and {@link Cursor#reset()} it to iterate again without allocating;
+     * cursors are independent, so loops may be nested as long as each uses its own.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Iterator that can be rewound. Removing through it visits the element moved into the removed slot next.
+     */
+    public final class Cursor implements Iterator<T> {
         int curIndex; // Index of next element
+        boolean removable; // Whether next() returned an element not removed yet
+
+        private Cursor() {
+        }
 
-        /**
-         * Returns {@code true} if the iteration has more elements.
-         * (In other words, returns {@code true} if {@link #next} would
-         * return an element rather than throwing an exception.)
-         *
-         * @return {@code true} if the iteration has more elements
-         */
         @Override
         public boolean hasNext() {
             return curIndex < size();
         }
 
         /**
-         * Returns the next element in the iteration.
-         *
-         * @return the next element in the iteration
          * @throws NoSuchElementException if the iteration has no more elements
          */
         @Override
+        @SuppressWarnings("unchecked")
         public T next() {
-            return get(curIndex++);
+            if (curIndex >= size()) {
+                throw new NoSuchElementException();
+            }
+            removable = true;
+            return (T) elements[curIndex++];
         }
 
+        /**
+         * @throws IllegalStateException if next() was not called since the last remove() or reset()
+         */
         @Override
         public void remove() {
-            UnorderedList.this.remove(curIndex - 1);
+            if (!removable) {
+                throw new IllegalStateException();
+            }
+            removable = false;
+            // The last element takes the removed slot, visit it next
+            UnorderedList.this.remove(--curIndex);
         }
 
-        void reset() {
+        /**
+         * Rewinds to the first element
+         *
+         * @return this cursor for chaining
+         */
+        public Cursor reset() {
             curIndex = 0;
+            removable = false;
+            return this;
         }
     }
 }
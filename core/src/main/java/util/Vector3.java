@@ -565,6 +565,14 @@ public class Vector3 {
         return (this.x == other.x) && (this.y == other.y) && (this.z == other.z);
     }
 
+    @Override
+    public int hashCode() {
+        // + 0 turns -0 into 0, which equals compares as the same
+        int result = Float.hashCode(x + 0f);
+        result = 31 * result + Float.hashCode(y + 0f);
+        return 31 * result + Float.hashCode(z + 0f);
+    }
+
     /**
      * Compares this vector with the other vector, using the supplied epsilon for fuzzy equality testing.
      *
@@ -0,0 +1,145 @@
+package util.collections;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from ints to objects, without boxing: open addressing with linear probing.
+ *
+ * @param <V> Value type. Null values are not supported, get returns null for absent keys.
+ */
+public class Int2ObjectMap<V> {
+    /**
+     * Callback of {@link #forEach(Each)}
+     */
+    @FunctionalInterface
+    public interface Each<V> {
+        void accept(int key, V value);
+    }
+
+    /**
+     * values[i] = null for free slots, capacity = keys.length (a power of two)
+     */
+    int[] keys;
+    Object[] values;
+    int size;
+
+    public Int2ObjectMap() {
+        keys = new int[16];
+        values = new Object[16];
+        size = 0;
+    }
+
+    /**
+     * @return Value of the key, null if absent
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int i = find(key);
+        return i < 0 ? null : (V) values[i];
+    }
+
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * @return Previous value of the key, null if absent
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Null values are not supported!");
+        }
+        int i = find(key);
+        if (i >= 0) {
+            V previous = (V) values[i];
+            values[i] = value;
+            return previous;
+        }
+        if ((size + 1) * 4 > keys.length * 3) resize(keys.length << 1);
+        for (i = slot(key); values[i] != null; i = (i + 1) & (keys.length - 1)) ;
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        return null;
+    }
+
+    /**
+     * @return Value of the removed key, null if absent
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int i = find(key);
+        if (i < 0) return null;
+        V value = (V) values[i];
+        int mask = keys.length - 1;
+        // Shift back the following keys of the run, so probing needs no tombstones
+        for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        values[i] = null;
+        size--;
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all keys, keeping the allocated capacity
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Performs the action for every entry, in no particular order
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(Each<V> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) action.accept(keys[i], (V) values[i]);
+        }
+    }
+
+    private int find(int key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return Preferred slot of the key
+     */
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ h >>> 16) & (keys.length - 1);
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null) continue;
+            int j = slot(oldKeys[i]);
+            while (values[j] != null) j = (j + 1) & (capacity - 1);
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+}
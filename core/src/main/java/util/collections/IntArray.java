@@ -0,0 +1,102 @@
+package util.collections;
+
+import java.util.Arrays;
+
+/**
+ * Growable array of ints, without boxing.
+ */
+public class IntArray {
+    /**
+     * Backing array, capacity = items.length. Only [0, size) is meaningful.
+     */
+    int[] items;
+    int size;
+
+    public IntArray() {
+        this(16);
+    }
+
+    public IntArray(int capacity) {
+        items = new int[capacity];
+        size = 0;
+    }
+
+    public void add(int value) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, Math.max(16, size << 1));
+        }
+        items[size++] = value;
+    }
+
+    public void addAll(int... values) {
+        ensureCapacity(size + values.length);
+        System.arraycopy(values, 0, items, size, values.length);
+        size += values.length;
+    }
+
+    public int get(int index) {
+        checkBounds(index);
+        return items[index];
+    }
+
+    public void set(int index, int value) {
+        checkBounds(index);
+        items[index] = value;
+    }
+
+    /**
+     * Removes the element at index, moving the last element in its place. O(1) but does not preserve order.
+     *
+     * @return Removed element
+     */
+    public int removeIndex(int index) {
+        checkBounds(index);
+        int value = items[index];
+        items[index] = items[--size];
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Forget all elements, keeping the allocated capacity
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Makes room for at least capacity elements without growing
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > items.length) {
+            items = Arrays.copyOf(items, Math.max(capacity, items.length << 1));
+        }
+    }
+
+    /**
+     * @return Backing array, valid until the next addition. Only [0, size()) is meaningful.
+     */
+    public int[] items() {
+        return items;
+    }
+
+    /**
+     * @return Copy of the elements, of length size()
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(items, size);
+    }
+
+    private void checkBounds(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+    }
+}
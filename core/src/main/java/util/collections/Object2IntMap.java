@@ -0,0 +1,153 @@
+package util.collections;
+
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Hash map from objects to ints, without boxing: open addressing with linear probing.
+ * Lookups of absent keys return a configurable missing value instead of null, so a single lookup both tests and reads.
+ *
+ * @param <K> Key type, compared with equals. Null keys are not supported.
+ */
+public class Object2IntMap<K> {
+    /**
+     * keys[i] = null for free slots, capacity = keys.length (a power of two)
+     */
+    Object[] keys;
+    int[] values;
+    int size;
+
+    /**
+     * Returned by lookups of absent keys
+     */
+    private final int missing;
+
+    /**
+     * Creates a map returning -1 for absent keys
+     */
+    public Object2IntMap() {
+        this(-1);
+    }
+
+    /**
+     * @param missing Value returned by lookups of absent keys
+     */
+    public Object2IntMap(int missing) {
+        this.missing = missing;
+        keys = new Object[16];
+        values = new int[16];
+        size = 0;
+    }
+
+    /**
+     * @return Value of the key, the missing value if absent
+     */
+    public int get(K key) {
+        int i = find(key);
+        return i < 0 ? missing : values[i];
+    }
+
+    public boolean containsKey(K key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * @return Previous value of the key, the missing value if absent
+     */
+    public int put(K key, int value) {
+        if (key == null) {
+            throw new NullPointerException("Null keys are not supported!");
+        }
+        int i = find(key);
+        if (i >= 0) {
+            int previous = values[i];
+            values[i] = value;
+            return previous;
+        }
+        if ((size + 1) * 4 > keys.length * 3) resize(keys.length << 1);
+        for (i = slot(key); keys[i] != null; i = (i + 1) & (keys.length - 1)) ;
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        return missing;
+    }
+
+    /**
+     * @return Value of the removed key, the missing value if absent
+     */
+    public int remove(K key) {
+        int i = find(key);
+        if (i < 0) return missing;
+        int value = values[i];
+        int mask = keys.length - 1;
+        // Shift back the following keys of the run, so probing needs no tombstones
+        for (int j = (i + 1) & mask; keys[j] != null; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = null;
+        size--;
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all keys, keeping the allocated capacity
+     */
+    public void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    /**
+     * Performs the action for every entry, in no particular order
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(ObjIntConsumer<K> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) action.accept((K) keys[i], values[i]);
+        }
+    }
+
+    private int find(Object key) {
+        if (key == null) return -1;
+        int mask = keys.length - 1;
+        for (int i = slot(key); keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i].equals(key)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return Preferred slot of the key
+     */
+    private int slot(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ h >>> 16) & (keys.length - 1);
+    }
+
+    private void resize(int capacity) {
+        Object[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new Object[capacity];
+        values = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) continue;
+            int j = slot(oldKeys[i]);
+            while (keys[j] != null) j = (j + 1) & (capacity - 1);
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package util.collections;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Set of values keyed by small non-negative int ids: values are packed in a dense array, and a sparse array maps each
+ * id to its slot. Add, remove, contains and get are O(1), iteration runs over the dense arrays.
+ * Removing a single id moves the last value into its slot; bulk removal and sorting keep the lookup valid too.
+ *
+ * @param <T> Value type
+ */
+public class SparseSet<T> {
+    /**
+     * Callback of {@link #forEach(Each)}
+     */
+    @FunctionalInterface
+    public interface Each<T> {
+        void accept(int id, T value);
+    }
+
+    /**
+     * sparse[id] = slot of the id in the dense arrays, -1 if absent
+     */
+    int[] sparse;
+
+    /**
+     * Ids and values, [0, size) is meaningful
+     */
+    int[] ids;
+    Object[] values;
+    int size;
+
+    /**
+     * Scratch space for sorting, kept to sort without allocating
+     */
+    private long[] order;
+    private int[] idScratch;
+    private Object[] valueScratch;
+
+    public SparseSet() {
+        sparse = new int[0];
+        ids = new int[16];
+        values = new Object[16];
+        size = 0;
+    }
+
+    /**
+     * Adds the id with the value, or replaces its value.
+     *
+     * @return Previous value of the id, null if absent
+     */
+    @SuppressWarnings("unchecked")
+    public T put(int id, T value) {
+        if (id < 0) {
+            throw new IndexOutOfBoundsException("Negative id " + id + "!");
+        }
+        if (id >= sparse.length) {
+            int old = sparse.length;
+            sparse = Arrays.copyOf(sparse, Math.max(id + 1, old << 1));
+            Arrays.fill(sparse, old, sparse.length, -1);
+        }
+        int slot = sparse[id];
+        if (slot >= 0) {
+            T previous = (T) values[slot];
+            values[slot] = value;
+            return previous;
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size << 1);
+            values = Arrays.copyOf(values, size << 1);
+        }
+        ids[size] = id;
+        values[size] = value;
+        sparse[id] = size++;
+        return null;
+    }
+
+    public boolean contains(int id) {
+        return id >= 0 && id < sparse.length && sparse[id] >= 0;
+    }
+
+    /**
+     * @return Value of the id, null if absent
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int id) {
+        return contains(id) ? (T) values[sparse[id]] : null;
+    }
+
+    /**
+     * Removes the id, moving the last value into its slot.
+     *
+     * @return Value of the removed id, null if absent
+     */
+    @SuppressWarnings("unchecked")
+    public T remove(int id) {
+        if (!contains(id)) return null;
+        int slot = sparse[id];
+        T value = (T) values[slot];
+        int last = --size;
+        ids[slot] = ids[last];
+        values[slot] = values[last];
+        sparse[ids[slot]] = slot;
+        values[last] = null;
+        sparse[id] = -1;
+        return value;
+    }
+
+    /**
+     * Removes every value matching the filter in a single pass. Remaining values keep their relative order.
+     *
+     * @return Number of removed values
+     */
+    @SuppressWarnings("unchecked")
+    public int removeIf(Predicate<? super T> filter) {
+        int kept = 0;
+        for (int slot = 0; slot < size; slot++) {
+            int id = ids[slot];
+            if (filter.test((T) values[slot])) {
+                sparse[id] = -1;
+                continue;
+            }
+            ids[kept] = id;
+            values[kept] = values[slot];
+            sparse[id] = kept++;
+        }
+        int removed = size - kept;
+        Arrays.fill(values, kept, size, null);
+        size = kept;
+        return removed;
+    }
+
+    /**
+     * Removes every id absent from the other set in a single pass. Remaining values keep their relative order.
+     *
+     * @return Number of removed values
+     */
+    public int retainAll(SparseSet<?> other) {
+        int kept = 0;
+        for (int slot = 0; slot < size; slot++) {
+            int id = ids[slot];
+            if (!other.contains(id)) {
+                sparse[id] = -1;
+                continue;
+            }
+            ids[kept] = id;
+            values[kept] = values[slot];
+            sparse[id] = kept++;
+        }
+        int removed = size - kept;
+        Arrays.fill(values, kept, size, null);
+        size = kept;
+        return removed;
+    }
+
+    /**
+     * Reorders the values by increasing key, e.g. to batch draws by material. Values with equal keys keep their order.
+     * Allocation-free once the set stopped growing.
+     */
+    @SuppressWarnings("unchecked")
+    public void sort(ToIntFunction<? super T> key) {
+        if (order == null || order.length < size) {
+            order = new long[ids.length];
+            idScratch = new int[ids.length];
+            valueScratch = new Object[ids.length];
+        }
+        // Key in the high bits, slot in the low bits for stability
+        for (int slot = 0; slot < size; slot++) {
+            order[slot] = (long) key.applyAsInt((T) values[slot]) << 32 | slot;
+        }
+        Arrays.sort(order, 0, size);
+        System.arraycopy(ids, 0, idScratch, 0, size);
+        System.arraycopy(values, 0, valueScratch, 0, size);
+        for (int slot = 0; slot < size; slot++) {
+            int from = (int) order[slot];
+            ids[slot] = idScratch[from];
+            values[slot] = valueScratch[from];
+            sparse[ids[slot]] = slot;
+        }
+        Arrays.fill(valueScratch, 0, size, null);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return Id in the given slot, slots are [0, size())
+     */
+    public int idAt(int slot) {
+        checkBounds(slot);
+        return ids[slot];
+    }
+
+    /**
+     * @return Value in the given slot, slots are [0, size())
+     */
+    @SuppressWarnings("unchecked")
+    public T valueAt(int slot) {
+        checkBounds(slot);
+        return (T) values[slot];
+    }
+
+    /**
+     * @return Slot of the id, -1 if absent
+     */
+    public int slotOf(int id) {
+        return contains(id) ? sparse[id] : -1;
+    }
+
+    /**
+     * Performs the action for every value in slot order. Allocation-free and re-entrant.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(Each<? super T> action) {
+        for (int slot = 0; slot < size; slot++) {
+            action.accept(ids[slot], (T) values[slot]);
+        }
+    }
+
+    /**
+     * Remove all ids, keeping the allocated capacity
+     */
+    public void clear() {
+        for (int slot = 0; slot < size; slot++) {
+            sparse[ids[slot]] = -1;
+        }
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    private void checkBounds(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException(slot);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package util.ecs;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+
+/**
+ * Table holding every entity that has exactly the same set of component classes.
+ * Components are stored column-wise, so the components of the entity at row r are columns[0..n][r].
+ * {@link Packed} components are further split in one float column per field.
+ */
+public final class Archetype {
+    /**
+     * Component type ids stored in this archetype, in ascending order. columns[c] holds components of typeIds[c].
+     * Tags are part of the signature but have no column, packed types have float columns instead, see packedIds.
+     */
+    final int[] typeIds;
+
+    /**
+     * Type ids of the {@link Packed} components stored in this archetype, in ascending order. floats[p] holds the
+     * columns of packedIds[p].
+     */
+    final int[] packedIds;
+
+    /**
+     * Bit signature of typeIds and tags, used as lookup key by the engine and for query matching
+     */
+    final Signature signature;
+
+    /**
+     * columnOf[id] = column holding components with type id, -1 if absent (or id >= columnOf.length)
+     */
+    private final int[] columnOf;
+
+    /**
+     * packedOf[id] = index in packedIds of the packed type id, -1 if absent (or id >= packedOf.length)
+     */
+    private final int[] packedOf;
+
+    /**
+     * floats[p][f][r] = float field f of the packed component of type packedIds[p] attached to entities[r]
+     */
+    float[][][] floats;
+
+    /**
+     * Column of nulls standing in for optional components absent from this archetype
+     */
+    private Object[] nulls = new Object[0];
+
+    /**
+     * columns[c][r] = component of type typeIds[c] attached to entities[r]
+     */
+    Object[][] columns;
+
+    /**
+     * added[c][r] and changed[c][r] = engine change tick at which columns[c][r] was added and last changed
+     */
+    int[][] added, changed;
+
+    /**
+     * entities[r] = entity living at row r
+     */
+    Entity[] entities;
+
+    /**
+     * Number of occupied rows
+     */
+    int size;
+
+    /**
+     * Cached transitions to the archetype with one more (or one less) component type, indexed by type id
+     */
+    Archetype[] addEdges, removeEdges;
+
+    /**
+     * Position in the engine's archetype list
+     */
+    int index;
+
+    Archetype(Signature signature, int capacity) {
+        this.signature = signature;
+        this.typeIds = Arrays.stream(signature.ids())
+                .filter(id -> !ComponentRegistry.isTag(id) && !ComponentRegistry.isPacked(id)).toArray();
+        this.packedIds = Arrays.stream(signature.ids()).filter(ComponentRegistry::isPacked).toArray();
+        this.columnOf = indexOf(typeIds);
+        this.packedOf = indexOf(packedIds);
+        this.floats = new float[packedIds.length][][];
+        for (int p = 0; p < packedIds.length; p++) {
+            floats[p] = new float[ComponentRegistry.fields(packedIds[p]).length][capacity];
+        }
+        this.columns = new Object[typeIds.length][capacity];
+        this.added = new int[typeIds.length][capacity];
+        this.changed = new int[typeIds.length][capacity];
+        this.entities = new Entity[capacity];
+        this.size = 0;
+        this.addEdges = new Archetype[0];
+        this.removeEdges = new Archetype[0];
+    }
+
+    /**
+     * @return indexOf[ids[i]] = i, -1 elsewhere
+     */
+    private static int[] indexOf(int[] ids) {
+        int[] indexOf = new int[ids.length == 0 ? 0 : ids[ids.length - 1] + 1];
+        Arrays.fill(indexOf, -1);
+        for (int i = 0; i < ids.length; i++) {
+            indexOf[ids[i]] = i;
+        }
+        return indexOf;
+    }
+
+    /**
+     * @return index in floats of the columns of the packed type id, -1 if this archetype does not store it
+     */
+    int packed(int typeId) {
+        return typeId < packedOf.length ? packedOf[typeId] : -1;
+    }
+
+    /**
+     * Stores a component at a row, in its column or scattered in its float columns if packed.
+     */
+    void write(int typeId, int row, Object component) {
+        int c = column(typeId);
+        if (c >= 0) {
+            columns[c][row] = component;
+            return;
+        }
+        int p = packed(typeId);
+        if (p < 0) return;
+        try {
+            Field[] fields = ComponentRegistry.fields(typeId);
+            for (int f = 0; f < fields.length; f++) {
+                floats[p][f][row] = fields[f].getFloat(component);
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return Component at a row, gathered in a new instance if packed, null if this archetype does not store it
+     */
+    Object read(int typeId, int row) {
+        int c = column(typeId);
+        if (c >= 0) return columns[c][row];
+        int p = packed(typeId);
+        if (p < 0) return null;
+        try {
+            Object component = ComponentRegistry.type(typeId).getDeclaredConstructor().newInstance();
+            Field[] fields = ComponentRegistry.fields(typeId);
+            for (int f = 0; f < fields.length; f++) {
+                fields[f].setFloat(component, floats[p][f][row]);
+            }
+            return component;
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return Objects of column c, or an array of nulls (at least as long as the columns) if c < 0
+     */
+    Object[] objects(int c) {
+        if (c >= 0) return columns[c];
+        Object[] nulls = this.nulls;
+        if (nulls.length < entities.length) {
+            // Racing threads may each allocate one, any is fine as it only ever holds nulls
+            nulls = this.nulls = new Object[entities.length];
+        }
+        return nulls;
+    }
+
+    /**
+     * @return column holding components with the given type id, -1 if this archetype does not store it
+     */
+    int column(int typeId) {
+        return typeId < columnOf.length ? columnOf[typeId] : -1;
+    }
+
+    /**
+     * @return column holding components of the given class, -1 if this archetype does not store it
+     */
+    int column(Class<?> type) {
+        return column(ComponentRegistry.id(type));
+    }
+
+    /**
+     * @return Whether entities of this archetype have a component of the specified class.
+     */
+    public boolean has(Class<?> type) {
+        return signature.get(ComponentRegistry.id(type));
+    }
+
+    /**
+     * @return Signature of the component classes in this archetype
+     */
+    public Signature getSignature() {
+        return signature;
+    }
+
+    /**
+     * @return Number of entities living in this archetype
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return cached archetype reached by adding (or removing, see edges) the type id, null if not cached yet
+     */
+    static Archetype edge(Archetype[] edges, int typeId) {
+        return typeId < edges.length ? edges[typeId] : null;
+    }
+
+    /**
+     * @return edges with edges[typeId] = to, grown if needed
+     */
+    static Archetype[] link(Archetype[] edges, int typeId, Archetype to) {
+        if (typeId >= edges.length) {
+            edges = Arrays.copyOf(edges, typeId + 1);
+        }
+        edges[typeId] = to;
+        return edges;
+    }
+
+    /**
+     * Appends an entity in a new row. Its components are left null, and marked added and changed at tick.
+     *
+     * @return row of the entity
+     */
+    int add(Entity entity, int tick) {
+        if (size == entities.length) {
+            resize(size + 1);
+        }
+        entities[size] = entity;
+        for (int c = 0; c < columns.length; c++) {
+            added[c][size] = tick;
+            changed[c][size] = tick;
+        }
+        return size++;
+    }
+
+    /**
+     * Swap-removes a row. The entity moved into the hole has its row updated.
+     */
+    void remove(int row) {
+        int last = size - 1;
+        if (row != last) {
+            entities[row] = entities[last];
+            entities[row].row = row;
+            for (int c = 0; c < columns.length; c++) {
+                columns[c][row] = columns[c][last];
+                added[c][row] = added[c][last];
+                changed[c][row] = changed[c][last];
+            }
+            for (float[][] fields : floats) {
+                for (float[] field : fields) {
+                    field[row] = field[last];
+                }
+            }
+        }
+        entities[last] = null;
+        for (Object[] column : columns) {
+            column[last] = null;
+        }
+        size--;
+    }
+
+    /**
+     * Makes room for count more rows, so that many entities can be added with a single resize.
+     */
+    void reserve(int count) {
+        if (size + count > entities.length) {
+            resize(size + count);
+        }
+    }
+
+    /**
+     * Grows the capacity of every column, at least doubling it.
+     */
+    private void resize(int minCapacity) {
+        int newCapacity = Math.max(Math.max(10, minCapacity), entities.length << 1);
+        if (newCapacity < entities.length) {
+            throw new OutOfMemoryError("Capacity overshot max value.");
+        }
+        entities = Arrays.copyOf(entities, newCapacity);
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = Arrays.copyOf(columns[c], newCapacity);
+            added[c] = Arrays.copyOf(added[c], newCapacity);
+            changed[c] = Arrays.copyOf(changed[c], newCapacity);
+        }
+        for (float[][] fields : floats) {
+            for (int f = 0; f < fields.length; f++) {
+                fields[f] = Arrays.copyOf(fields[f], newCapacity);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package util.ecs;
+
+/**
+ * Rows [from, to) of an archetype matched by a query. Gives direct access to the component columns, so loops over
+ * them compile down to plain array accesses.
+ */
+public final class Chunk {
+    final Archetype archetype;
+
+    /**
+     * Type ids of the query terms and their columns in the archetype, null if the chunk does not come from a query
+     */
+    final int[] ids, cols;
+    final int from, to;
+
+    Chunk(Archetype archetype, int[] ids, int[] cols, int from, int to) {
+        this.archetype = archetype;
+        this.ids = ids;
+        this.cols = cols;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @return First row of this chunk
+     */
+    public int from() {
+        return from;
+    }
+
+    /**
+     * @return Row past the last row of this chunk
+     */
+    public int to() {
+        return to;
+    }
+
+    public int size() {
+        return to - from;
+    }
+
+    /**
+     * @return floats[f][r] = field f (see {@link ComponentRegistry#field}) of the packed component at row r
+     * @throws RuntimeException if the archetype does not store the packed component
+     */
+    public float[][] floats(Class<? extends Packed> type) {
+        int p = archetype.packed(ComponentRegistry.id(type));
+        if (p < 0) {
+            throw new RuntimeException("Chunk has no " + type.getSimpleName() + " columns!");
+        }
+        return archetype.floats[p];
+    }
+
+    /**
+     * @return objects[r] = component of the given class at row r
+     * @throws RuntimeException if the archetype does not store the component
+     */
+    public Object[] objects(Class<?> type) {
+        int c = archetype.column(type);
+        if (c < 0) {
+            throw new RuntimeException("Chunk has no " + type.getSimpleName() + " column!");
+        }
+        return archetype.columns[c];
+    }
+
+    /**
+     * Column of a query term by position, which lets loops handle any number of terms.
+     *
+     * @return objects[r] = component of the term-th query term at row r, all null for absent optional terms
+     * @throws RuntimeException if the chunk does not come from a query, or the term is a tag or packed component
+     * (use {@link #floats(Class)} for those)
+     */
+    public Object[] term(int term) {
+        if (cols == null) {
+            throw new RuntimeException("Chunk does not come from a query, it has no terms!");
+        }
+        int c = cols[term];
+        if (c < 0 && archetype.signature.get(ids[term])) {
+            throw new RuntimeException(ComponentRegistry.type(ids[term]).getSimpleName() + " has no object column, use floats()!");
+        }
+        return archetype.objects(c);
+    }
+
+    /**
+     * @return entities[r] = entity at row r
+     */
+    public Entity[] entities() {
+        return archetype.entities;
+    }
+}
@@ -0,0 +1,23 @@
+package util.ecs;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-size binary encoding of a component class, used by {@link Snapshot}.
+ */
+public interface Codec<T> {
+    /**
+     * @return Number of bytes every encoded component takes
+     */
+    int size();
+
+    /**
+     * Writes exactly {@link #size()} bytes at the position of the buffer, advancing it.
+     */
+    void write(T component, ByteBuffer buffer);
+
+    /**
+     * Reads exactly {@link #size()} bytes at the position of the buffer, advancing it.
+     */
+    T read(ByteBuffer buffer);
+}
@@ -0,0 +1,112 @@
+package util.ecs;
+
+import java.util.Arrays;
+
+/**
+ * Records structural changes (entity creation/deletion, component addition/removal) to apply later, at a sync point,
+ * instead of mutating archetypes while they are being iterated.
+ * A buffer is meant to be used by a single thread, see {@link Engine#commands()}.
+ */
+public final class CommandBuffer {
+    static final byte CREATE = 0, DELETE = 1, ADD = 2, REMOVE = 3, TAG = 4;
+
+    final Engine engine;
+
+    /**
+     * Thread recording into this buffer
+     */
+    final Thread owner;
+
+    /**
+     * ops[i] is applied on the entity with handle targets[i], with payloads[i] (component for ADD, class for REMOVE and TAG).
+     * Commands on entities deleted in the meantime are dropped.
+     */
+    byte[] ops;
+    long[] targets;
+    Object[] payloads;
+    int size;
+
+    CommandBuffer(Engine engine, Thread owner) {
+        this.engine = engine;
+        this.owner = owner;
+        ops = new byte[16];
+        targets = new long[16];
+        payloads = new Object[16];
+        size = 0;
+    }
+
+    /**
+     * Records the creation of an entity. The returned entity (and its handle) can be used as target of other commands,
+     * but is not alive (holds no components) until the buffer is applied.
+     *
+     * @param components to add to the entity
+     * @return Entity that will be created
+     */
+    public Entity createEntity(Object... components) {
+        Entity entity = engine.allocate();
+        record(CREATE, entity, null);
+        for (Object c : components) {
+            record(ADD, entity, c);
+        }
+        return entity;
+    }
+
+    /**
+     * Records the deletion of an entity
+     */
+    public void deleteEntity(Entity entity) {
+        record(DELETE, entity, null);
+    }
+
+    /**
+     * Records the addition of a component. Applying throws if the entity already holds a component of that class.
+     */
+    public void add(Entity entity, Object component) {
+        record(ADD, entity, component);
+    }
+
+    /**
+     * Records the tagging of an entity, see {@link Entity#tag(Class)}
+     */
+    public void tag(Entity entity, Class<? extends Tag> tag) {
+        record(TAG, entity, tag);
+    }
+
+    /**
+     * Records the removal of the component (or tag) of the given class, if any
+     */
+    public void remove(Entity entity, Class<?> component) {
+        record(REMOVE, entity, component);
+    }
+
+    /**
+     * @return Number of recorded commands not yet applied
+     */
+    public int size() {
+        return size;
+    }
+
+    private void record(byte op, Entity target, Object payload) {
+        if (target.engine != engine) {
+            throw new RuntimeException("Entity belongs to another engine!");
+        }
+        if (size == ops.length) {
+            int capacity = ops.length << 1;
+            ops = Arrays.copyOf(ops, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            payloads = Arrays.copyOf(payloads, capacity);
+        }
+        ops[size] = op;
+        targets[size] = target.getHandle();
+        payloads[size] = payload;
+        size++;
+    }
+
+    /**
+     * Forget all commands, keeping the allocated capacity
+     */
+    void clear() {
+        Arrays.fill(payloads, 0, size, null);
+        size = 0;
+    }
+}
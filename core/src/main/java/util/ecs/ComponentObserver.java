@@ -0,0 +1,12 @@
+package util.ecs;
+
+/**
+ * Notified of a lifecycle event of a component, see {@link Engine#onAdd}, {@link Engine#onRemove} and {@link Engine#onSet}.
+ */
+public interface ComponentObserver<T> {
+    /**
+     * @param entity    handle of the entity, which may have been deleted since the event
+     * @param component concerned component (null for tags)
+     */
+    void accept(long entity, T component);
+}
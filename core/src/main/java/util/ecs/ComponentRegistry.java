@@ -0,0 +1,158 @@
+package util.ecs;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns every component class a dense integer id, shared by all engines.
+ * Ids start at 0 and are handed out in order of first use, so they can index arrays and signature bits.
+ */
+public final class ComponentRegistry {
+    /**
+     * Lazily computed id of each class. ClassValue avoids hashing the class on every lookup.
+     * Threads racing on the first lookup of a class may all compute a value, only one of which is kept: ids are
+     * therefore taken from {@link #registered} under the lock, so every thread computes the same one.
+     */
+    private static final ClassValue<Integer> ids = new ClassValue<>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            synchronized (types) {
+                Integer id = registered.get(type);
+                if (id != null) return id;
+                // May throw on a bad layout, before anything is registered
+                Field[] floats = Packed.class.isAssignableFrom(type) ? floatFields(type) : null;
+                id = types.size();
+                registered.put(type, id);
+                types.add(type);
+                tags.add(Tag.class.isAssignableFrom(type));
+                fields.add(floats);
+                return id;
+            }
+        }
+    };
+
+    /**
+     * Id of every registered class, guarded like the lists below
+     */
+    private static final Map<Class<?>, Integer> registered = new IdentityHashMap<>();
+
+    /**
+     * types.get(id) = class registered with that id
+     */
+    private static final List<Class<?>> types = new ArrayList<>();
+
+    /**
+     * tags.get(id) = whether the type only exists as a signature bit, without any stored component
+     */
+    private static final List<Boolean> tags = new ArrayList<>();
+
+    /**
+     * fields.get(id) = float fields stored in columns if the type is {@link Packed}, null otherwise
+     */
+    private static final List<Field[]> fields = new ArrayList<>();
+
+    private ComponentRegistry() {
+    }
+
+    /**
+     * @return dense id of the component class, registering it on first use
+     */
+    public static int id(Class<?> type) {
+        return ids.get(type);
+    }
+
+    /**
+     * @return class registered under the given id
+     */
+    public static Class<?> type(int id) {
+        synchronized (types) {
+            return types.get(id);
+        }
+    }
+
+    /**
+     * @return Whether the type with the given id is a tag, stored as a signature bit only
+     */
+    public static boolean isTag(int id) {
+        synchronized (types) {
+            return tags.get(id);
+        }
+    }
+
+    /**
+     * @return Whether the type with the given id is stored in float columns, see {@link Packed}
+     */
+    public static boolean isPacked(int id) {
+        synchronized (types) {
+            return fields.get(id) != null;
+        }
+    }
+
+    /**
+     * @return float fields of the packed type with the given id, one per column
+     */
+    static Field[] fields(int id) {
+        synchronized (types) {
+            return fields.get(id);
+        }
+    }
+
+    /**
+     * @return Column holding the given float field of a packed type, see {@link Chunk#floats(Class)}
+     * @throws RuntimeException if the packed type has no such float field
+     */
+    public static int field(Class<? extends Packed> type, String name) {
+        Field[] fields = fields(id(type));
+        for (int f = 0; f < fields.length; f++) {
+            if (fields[f].getName().equals(name)) return f;
+        }
+        throw new RuntimeException(type.getSimpleName() + " has no float field " + name + "!");
+    }
+
+    /**
+     * @return Float fields of the packed type, in the column order of its {@link Packed.Layout}
+     * @throws RuntimeException if the layout is missing or does not list every float field exactly once
+     */
+    private static Field[] floatFields(Class<?> type) {
+        Packed.Layout layout = type.getAnnotation(Packed.Layout.class);
+        if (layout == null) {
+            throw new RuntimeException(type.getSimpleName() + " must declare its columns with @Packed.Layout!");
+        }
+        long declared = Arrays.stream(type.getDeclaredFields())
+                .filter(f -> f.getType() == float.class && !Modifier.isStatic(f.getModifiers()))
+                .count();
+        String[] names = layout.value();
+        if (names.length != declared || Arrays.stream(names).distinct().count() != declared) {
+            throw new RuntimeException("Layout of " + type.getSimpleName() + " must list each of its " + declared + " float fields once!");
+        }
+        Field[] floats = new Field[names.length];
+        for (int f = 0; f < names.length; f++) {
+            try {
+                floats[f] = type.getDeclaredField(names[f]);
+            } catch (NoSuchFieldException e) {
+                throw new RuntimeException(type.getSimpleName() + " has no float field " + names[f] + "!");
+            }
+            if (floats[f].getType() != float.class || Modifier.isStatic(floats[f].getModifiers())) {
+                throw new RuntimeException(type.getSimpleName() + " has no float field " + names[f] + "!");
+            }
+            floats[f].setAccessible(true);
+        }
+        return floats;
+    }
+
+    /**
+     * @return Signature with the bits of all the given component classes set
+     */
+    public static Signature signature(Class<?>... types) {
+        Signature signature = new Signature();
+        for (Class<?> type : types) {
+            signature.set(id(type));
+        }
+        return signature;
+    }
+}
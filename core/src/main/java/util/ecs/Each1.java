@@ -0,0 +1,9 @@
+package util.ecs;
+
+/**
+ * Callback receiving the component of the matched entity.
+ * See {@link Query#forEach(Each1)}.
+ */
+public interface Each1<T> {
+    void accept(T c1);
+}
@@ -0,0 +1,9 @@
+package util.ecs;
+
+/**
+ * Callback receiving the components of the matched entity, in the order the query requested them.
+ * See {@link Query#forEach(Each2)}.
+ */
+public interface Each2<T1, T2> {
+    void accept(T1 c1, T2 c2);
+}
@@ -0,0 +1,9 @@
+package util.ecs;
+
+/**
+ * Callback receiving the components of the matched entity, in the order the query requested them.
+ * See {@link Query#forEach(Each3)}.
+ */
+public interface Each3<T1, T2, T3> {
+    void accept(T1 c1, T2 c2, T3 c3);
+}
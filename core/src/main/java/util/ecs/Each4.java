@@ -0,0 +1,9 @@
+package util.ecs;
+
+/**
+ * Callback receiving the components of the matched entity, in the order the query requested them.
+ * See {@link Query#forEach(Each4)}.
+ */
+public interface Each4<T1, T2, T3, T4> {
+    void accept(T1 c1, T2 c2, T3 c3, T4 c4);
+}
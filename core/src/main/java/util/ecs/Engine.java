@@ -1,9 +1,11 @@
 package util.ecs;
 
-import util.UnorderedList;
-
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -11,9 +13,66 @@ import java.util.stream.Stream;
  */
 public class Engine {
     /**
-     * Entities attached to this engine
+     * Internal tag carried by disabled entities. Queries never match it.
+     */
+    static final class Disabled implements Tag {
+    }
+
+    static final int DISABLED = ComponentRegistry.id(Disabled.class);
+
+    /**
+     * slots[i] = entity object occupying (or last occupying) slot i, for i < slotCount, null after.
+     * Grown under slotLock, but read without it: volatile so a grown array is only seen fully copied.
+     */
+    volatile Entity[] slots;
+    int slotCount;
+
+    /**
+     * Stack of released slots, reused before new ones
+     */
+    private int[] free;
+    private int freeCount;
+
+    /**
+     * Number of alive entities
+     */
+    int alive;
+
+    /**
+     * Stamped on components when they are added or changed. Queries filtering on changes advance it on every
+     * iteration, see {@link Query#changed(Class[])}.
+     */
+    final AtomicInteger tick = new AtomicInteger(1);
+
+    /**
+     * Guards slot allocation, which command buffers do from any thread
+     */
+    private final Object slotLock = new Object();
+
+    /**
+     * Archetypes keyed by their signature
      */
-    UnorderedList<Entity> entities;
+    Map<Signature, Archetype> archetypes;
+
+    /**
+     * Same archetypes as above, for fast iteration
+     */
+    List<Archetype> archetypeList;
+
+    /**
+     * Archetype of entities without components
+     */
+    Archetype root;
+
+    /**
+     * Queries kept up-to-date by this engine
+     */
+    List<Query> queries;
+
+    /**
+     * Queries backing {@link #findEntitiesWith}, keyed by requested signature
+     */
+    Map<Signature, Query> queryCache;
 
     /**
      * Caches for allocation reduction
@@ -25,13 +84,59 @@ public class Engine {
     /**
      * Systems attached to this engine
      */
-    List<System> systems;
+    Scheduler scheduler;
+
+    /**
+     * Pool running parallel query iteration
+     */
+    ForkJoinPool pool;
+
+    /**
+     * Per-system sampling, null when disabled
+     */
+    Profiler profiler;
+
+    /**
+     * Command buffer of each thread, and the same buffers in creation order. Keyed by thread rather than held in a
+     * ThreadLocal, so pool threads never keep the engine reachable; buffers of dead threads are dropped by flush.
+     */
+    private final ConcurrentHashMap<Thread, CommandBuffer> commandBuffers;
+    final List<CommandBuffer> buffers;
+
+    /**
+     * Lifecycle observers and their pending events
+     */
+    final Observers observers;
+
+    /**
+     * Ids of the {@link Tracked} component types bound to their entities, see {@link #track(Class)}
+     */
+    private final BitSet tracked = new BitSet();
+
+    /**
+     * Entities touched by the command buffers being applied
+     */
+    private final ArrayList<Entity> touched;
+
+    private static final Comparator<Entity> BY_PENDING = Comparator.comparingInt(e -> e.deleted ? -1 : e.pending.index);
 
     public Engine() {
-        entities = new UnorderedList<>(10);
-        systems = new ArrayList<>();
+        slots = new Entity[16];
+        free = new int[16];
+        archetypes = new HashMap<>();
+        archetypeList = new ArrayList<>();
+        queries = new ArrayList<>();
+        queryCache = new HashMap<>();
+        root = archetype(new Signature());
+        scheduler = new Scheduler();
+        pool = ForkJoinPool.commonPool();
         resultCache = new Result<>();
         w2Cache = new With2<>();
+        w3Cache = new With3<>();
+        observers = new Observers();
+        buffers = new ArrayList<>();
+        touched = new ArrayList<>();
+        commandBuffers = new ConcurrentHashMap<>();
     }
 
     /**
@@ -41,27 +146,186 @@ public class Engine {
      * @return Created entity
      */
     public Entity createEntity(Object... components) {
-        Entity entity = new Entity();
+        // Find the final archetype first so the entity is only inserted once
+        Archetype target = root;
         for (Object c : components) {
-            entity.add(c);
+            int id = ComponentRegistry.id(c.getClass());
+            if (target.signature.get(id)) {
+                throw new RuntimeException("Entity can only have at most one component of a given class!");
+            }
+            target = withAdded(target, id);
         }
-        entities.add(entity);
-        entity.setEnabled(true);
+        Entity entity = allocate();
+        entity.archetype = target;
+        entity.row = target.add(entity, tick.get());
+        for (Object c : components) {
+            target.write(ComponentRegistry.id(c.getClass()), entity.row, c);
+        }
+        observers.transition(entity, null, target);
+        alive++;
         return entity;
     }
 
     /**
-     * Requires == for entity (not just Objects.equals)
+     * Creates count entities in the archetype at once: storage for the whole batch is reserved up front, then the
+     * initializer fills the component columns of the new rows in place.
+     *
+     * @param archetype   of the new entities, see {@link #archetype(Class[])}
+     * @param initializer called once with the chunk of new rows, whose columns are accessed by class
+     * @throws RuntimeException if the archetype belongs to another engine, or if the initializer fails or leaves a
+     *                          component null, in which case no entity is created
+     */
+    public void createEntities(int count, Archetype archetype, Consumer<Chunk> initializer) {
+        if (count < 0) {
+            throw new RuntimeException("Cannot create a negative number of entities!");
+        }
+        if (archetypes.get(archetype.signature) != archetype) {
+            throw new RuntimeException("Archetype belongs to another engine!");
+        }
+        archetype.reserve(count);
+        synchronized (slotLock) {
+            int needed = slotCount + Math.max(0, count - freeCount);
+            if (needed > slots.length) {
+                slots = Arrays.copyOf(slots, Math.max(needed, slots.length << 1));
+            }
+        }
+        int from = archetype.size, to = from + count, now = tick.get();
+        for (int i = 0; i < count; i++) {
+            Entity entity = allocate();
+            entity.archetype = archetype;
+            entity.row = archetype.add(entity, now);
+        }
+        try {
+            initializer.accept(new Chunk(archetype, null, null, from, to));
+            for (int c = 0; c < archetype.columns.length; c++) {
+                for (int r = from; r < to; r++) {
+                    if (archetype.columns[c][r] == null) {
+                        throw new RuntimeException("Initializer left a " + ComponentRegistry.type(archetype.typeIds[c]).getSimpleName() + " null!");
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // The batch is at the end of the archetype, remove it from the last row
+            for (int r = to - 1; r >= from; r--) {
+                Entity entity = archetype.entities[r];
+                archetype.remove(r);
+                release(entity);
+            }
+            throw e;
+        }
+        for (int r = from; r < to; r++) {
+            observers.transition(archetype.entities[r], null, archetype);
+        }
+        alive += count;
+    }
+
+    /**
+     * Deletes every entity attached to this engine.
+     */
+    public void clear() {
+        for (Archetype archetype : archetypeList) {
+            while (archetype.size > 0) {
+                deleteEntity(archetype.entities[archetype.size - 1]);
+            }
+        }
+    }
+
+    /**
+     * @return Archetype of the entities holding exactly components of the given classes, created if needed
+     */
+    public Archetype archetype(Class<?>... components) {
+        return archetype(ComponentRegistry.signature(components));
+    }
+
+    /**
+     * The entity object (and its slot) is recycled for later entities, handles to it become stale.
      *
      * @param entity to remove from system
      * @return whether entity was removed or not
      */
     public boolean deleteEntity(Entity entity) {
-        if (entities.remove(entity)) {
-            entity.dispose();
-            return true;
+        if (entity.engine != this || entity.archetype == null) return false;
+        observers.transition(entity, entity.archetype, null);
+        entity.archetype.remove(entity.row);
+        alive--;
+        release(entity);
+        return true;
+    }
+
+    /**
+     * @param handle of the entity to remove from system
+     * @return whether entity was removed or not (also if the handle is stale)
+     */
+    public boolean deleteEntity(long handle) {
+        Entity entity = getEntity(handle);
+        return entity != null && deleteEntity(entity);
+    }
+
+    /**
+     * @return Entity identified by the handle, null if it was deleted since
+     */
+    public Entity getEntity(long handle) {
+        Entity entity = slot(handle);
+        return entity == null || entity.archetype == null ? null : entity;
+    }
+
+    /**
+     * @return Whether the entity identified by the handle still exists
+     */
+    public boolean isAlive(long handle) {
+        return getEntity(handle) != null;
+    }
+
+    /**
+     * @return Number of entities attached to this engine
+     */
+    public int getEntityCount() {
+        return alive;
+    }
+
+    /**
+     * @return Entity object in the slot of the handle if the handle is not stale (the entity may not be alive yet)
+     */
+    Entity slot(long handle) {
+        int index = Entity.index(handle);
+        // Read without the lock: slots is replaced (never shrunk) when growing, and unused slots are null
+        Entity[] slots = this.slots;
+        if (index < 0 || index >= slots.length) return null;
+        Entity entity = slots[index];
+        return entity != null && entity.generation == Entity.generation(handle) ? entity : null;
+    }
+
+    /**
+     * @return Entity object in a free slot, not attached to any archetype yet
+     */
+    Entity allocate() {
+        synchronized (slotLock) {
+            if (freeCount > 0) {
+                return slots[free[--freeCount]];
+            }
+            Entity[] slots = this.slots;
+            if (slotCount == slots.length) {
+                slots = Arrays.copyOf(slots, slotCount << 1);
+                this.slots = slots;
+            }
+            Entity entity = new Entity(this, slotCount);
+            slots[slotCount++] = entity;
+            return entity;
+        }
+    }
+
+    /**
+     * Detaches the entity object and frees its slot, making handles to it stale.
+     */
+    void release(Entity entity) {
+        synchronized (slotLock) {
+            entity.archetype = null;
+            entity.generation++;
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, freeCount << 1);
+            }
+            free[freeCount++] = entity.index;
         }
-        return false;
     }
 
     /**
@@ -79,79 +343,474 @@ public class Engine {
     }
 
     private boolean setEntity(Entity entity, boolean enabled) {
-        if (entities.contains(entity)) {
+        if (entity.engine == this && entity.archetype != null) {
             entity.setEnabled(enabled);
             return true;
         }
         return false;
     }
 
+    /**
+     * Creates a query matching every enabled entity with components of all the specified classes.
+     * The query stays registered with this engine, which keeps its matches up-to-date, until {@link Query#dispose()}.
+     * Create queries once (not every frame).
+     *
+     * @return a query over the entities holding the components
+     */
+    public Query query(Class<?>... components) {
+        return query().with(components).build();
+    }
+
+    /**
+     * Starts describing a query with exclusions and optional terms, e.g.
+     * {@code engine.query().with(Mesh.class, Transform.class).without(Transparent.class).optional(Light.class).build()}.
+     *
+     * @return builder compiling into a query registered with this engine
+     */
+    public QueryBuilder query() {
+        return new QueryBuilder(this);
+    }
+
+    Query register(Query query) {
+        for (Archetype archetype : archetypeList) {
+            query.register(archetype);
+        }
+        queries.add(query);
+        return query;
+    }
+
     /**
      * Finds all entities with components of the specified type.
      *
      * @return a stream of components (of no particular order)
+     * @throws IllegalArgumentException for tags and packed components
      */
+    @SuppressWarnings("unchecked")
     public <T> Stream<Result<T>> findEntitiesWith(Class<T> component) {
-        return entities.stream().filter(e -> e.containsType(component) && e.isEnabled()).
-                map((e) -> {
-                    var res = (Result<T>) resultCache;
-                    res.entity = e;
-                    res.components = e.getComponent(component);
-                    return res;
-                });
+        var res = (Result<T>) resultCache;
+        int id = objectId(component);
+        return matching(ComponentRegistry.signature(component)).flatMap(a -> {
+            Object[] col = a.columns[a.column(id)];
+            return rows(a).mapToObj(r -> {
+                res.entity = a.entities[r];
+                res.components = (T) col[r];
+                return res;
+            });
+        });
     }
 
     /**
      * Finds all entities with components of the specified types.
      *
      * @return a stream of components (of no particular order)
+     * @throws IllegalArgumentException for tags and packed components
      */
+    @SuppressWarnings("unchecked")
     public <T1, T2> Stream<Result<With2<T1, T2>>> findEntitiesWith(Class<T1> comp1, Class<T2> comp2) {
         var comps = (With2<T1, T2>) w2Cache;
         var res = (Result<With2<T1, T2>>) resultCache;
-        res.components = comps;
-        return entities.stream().filter(e -> e.containsType(comp1) && e.containsType(comp2)).
-                map((e) -> {
-                    res.entity = e;
-                    res.components.comp1 = e.getComponent(comp1);
-                    res.components.comp2 = e.getComponent(comp2);
-                    return res;
-                });
+        int id1 = objectId(comp1), id2 = objectId(comp2);
+        return matching(ComponentRegistry.signature(comp1, comp2)).flatMap(a -> {
+            Object[] col1 = a.columns[a.column(id1)], col2 = a.columns[a.column(id2)];
+            return rows(a).mapToObj(r -> {
+                res.entity = a.entities[r];
+                res.components = comps;
+                comps.comp1 = (T1) col1[r];
+                comps.comp2 = (T2) col2[r];
+                return res;
+            });
+        });
     }
 
     /**
      * Finds all entities with components of the specified types.
      *
      * @return a stream of components (of no particular order)
+     * @throws IllegalArgumentException for tags and packed components
      */
+    @SuppressWarnings("unchecked")
     public <T1, T2, T3> Stream<Result<With3<T1, T2, T3>>> findEntitiesWith(Class<T1> comp1, Class<T2> comp2, Class<T3> comp3) {
         var comps = (With3<T1, T2, T3>) w3Cache;
         var res = (Result<With3<T1, T2, T3>>) resultCache;
-        res.components = comps;
-        return entities.stream().filter(e -> e.containsType(comp1) && e.containsType(comp2) && e.containsType(comp3)).
-                map((e) -> {
-                    res.entity = e;
-                    res.components.comp1 = e.getComponent(comp1);
-                    res.components.comp2 = e.getComponent(comp2);
-                    res.components.comp3 = e.getComponent(comp3);
-                    return res;
-                });
+        int id1 = objectId(comp1), id2 = objectId(comp2), id3 = objectId(comp3);
+        return matching(ComponentRegistry.signature(comp1, comp2, comp3)).flatMap(a -> {
+            Object[] col1 = a.columns[a.column(id1)], col2 = a.columns[a.column(id2)], col3 = a.columns[a.column(id3)];
+            return rows(a).mapToObj(r -> {
+                res.entity = a.entities[r];
+                res.components = comps;
+                comps.comp1 = (T1) col1[r];
+                comps.comp2 = (T2) col2[r];
+                comps.comp3 = (T3) col3[r];
+                return res;
+            });
+        });
+    }
+
+    /**
+     * @return Id of a component class stored as objects
+     * @throws IllegalArgumentException for tags and packed components, which have no objects to find
+     */
+    private static int objectId(Class<?> component) {
+        int id = ComponentRegistry.id(component);
+        if (ComponentRegistry.isTag(id) || ComponentRegistry.isPacked(id)) {
+            throw new IllegalArgumentException(component.getSimpleName() + " has no object column, use a query instead!");
+        }
+        return id;
+    }
+
+    /**
+     * @return non-empty archetypes of enabled entities whose signature contains the mask
+     */
+    private Stream<Archetype> matching(Signature mask) {
+        Query query = queryCache.get(mask);
+        if (query == null) {
+            query = query(Arrays.stream(mask.ids()).mapToObj(ComponentRegistry::type).toArray(Class<?>[]::new));
+            queryCache.put(mask, query);
+        }
+        return query.archetypes.stream().filter(a -> a.size > 0);
+    }
+
+    /**
+     * @return rows of the archetype
+     */
+    private IntStream rows(Archetype archetype) {
+        return IntStream.range(0, archetype.size);
     }
 
     /**
+     * Retrieves or creates the archetype for exactly the given signature.
+     */
+    Archetype archetype(Signature signature) {
+        Archetype archetype = archetypes.get(signature);
+        if (archetype == null) {
+            archetype = new Archetype(new Signature(signature), 10);
+            archetypes.put(archetype.signature, archetype);
+            archetype.index = archetypeList.size();
+            archetypeList.add(archetype);
+            for (Query query : queries) {
+                query.register(archetype);
+            }
+        }
+        return archetype;
+    }
+
+    /**
+     * @return archetype holding the types of from plus typeId
+     */
+    Archetype withAdded(Archetype from, int typeId) {
+        if (from.signature.get(typeId)) return from;
+        Archetype to = Archetype.edge(from.addEdges, typeId);
+        if (to == null) {
+            to = archetype(new Signature(from.signature).set(typeId));
+            from.addEdges = Archetype.link(from.addEdges, typeId, to);
+            to.removeEdges = Archetype.link(to.removeEdges, typeId, from);
+        }
+        return to;
+    }
+
+    /**
+     * @return archetype holding the types of from minus typeId
+     */
+    Archetype withRemoved(Archetype from, int typeId) {
+        if (!from.signature.get(typeId)) return from;
+        Archetype to = Archetype.edge(from.removeEdges, typeId);
+        if (to == null) {
+            to = archetype(new Signature(from.signature).clear(typeId));
+            from.removeEdges = Archetype.link(from.removeEdges, typeId, to);
+            to.addEdges = Archetype.link(to.addEdges, typeId, from);
+        }
+        return to;
+    }
+
+    /**
+     * Moves an entity into another archetype, carrying over every component (and its ticks) both archetypes store.
+     * Components only the destination stores are left null, and marked added.
+     */
+    void move(Entity entity, Archetype to) {
+        Archetype from = entity.archetype;
+        if (from == to) return;
+        observers.transition(entity, from, to);
+        int row = to.add(entity, tick.get());
+        for (int c = 0; c < from.typeIds.length; c++) {
+            int dst = to.column(from.typeIds[c]);
+            if (dst >= 0) {
+                to.columns[dst][row] = from.columns[c][entity.row];
+                to.added[dst][row] = from.added[c][entity.row];
+                to.changed[dst][row] = from.changed[c][entity.row];
+            }
+        }
+        for (int p = 0; p < from.packedIds.length; p++) {
+            int dst = to.packed(from.packedIds[p]);
+            if (dst >= 0) {
+                for (int f = 0; f < from.floats[p].length; f++) {
+                    to.floats[dst][f][row] = from.floats[p][f][entity.row];
+                }
+            }
+        }
+        from.remove(entity.row);
+        entity.archetype = to;
+        entity.row = row;
+    }
+
+    /**
+     * Structural changes (creating/deleting entities, adding/removing components) must not happen while a query
+     * iterates, or while systems run concurrently. Record them in this buffer instead: they are applied by
+     * {@link #flush()}, which the scheduler calls before exclusive systems and at the end of {@link #run(float)}.
+     *
+     * @return Command buffer of the calling thread
+     */
+    public CommandBuffer commands() {
+        Thread thread = Thread.currentThread();
+        CommandBuffer buffer = commandBuffers.get(thread);
+        return buffer != null ? buffer : register(thread);
+    }
+
+    private CommandBuffer register(Thread thread) {
+        synchronized (buffers) {
+            CommandBuffer buffer = new CommandBuffer(this, thread);
+            buffers.add(buffer);
+            commandBuffers.put(thread, buffer);
+            return buffer;
+        }
+    }
+
+    /**
+     * Applies every command buffer, in the order the commands were recorded (buffer by buffer), then delivers the
+     * pending lifecycle events to observers.
+     * The commands touching an entity are resolved to a single move into its final archetype, and entities are then
+     * moved grouped by destination archetype, which grows at most once.
+     * Must not be called while a query iterates or a system runs.
+     *
+     * @throws RuntimeException if a component of an already attached class is added, in which case nothing is applied
+     */
+    public void flush() {
+        synchronized (buffers) {
+            try {
+                resolve();
+                apply();
+            } finally {
+                for (Entity entity : touched) {
+                    entity.pending = null;
+                    entity.deleted = false;
+                }
+                touched.clear();
+                for (CommandBuffer buffer : buffers) {
+                    // Free the slots of entities that were never created (deleted in the same batch, or failure)
+                    for (int i = 0; i < buffer.size; i++) {
+                        if (buffer.ops[i] != CommandBuffer.CREATE) continue;
+                        Entity entity = slot(buffer.targets[i]);
+                        if (entity != null && entity.archetype == null) release(entity);
+                    }
+                    buffer.clear();
+                }
+                for (int i = buffers.size() - 1; i >= 0; i--) {
+                    CommandBuffer buffer = buffers.get(i);
+                    if (!buffer.owner.isAlive()) {
+                        buffers.remove(i);
+                        commandBuffers.remove(buffer.owner);
+                    }
+                }
+            }
+            observers.deliver(this);
+        }
+    }
+
+    /**
+     * Computes the archetype each touched entity ends up in, without moving anything.
+     */
+    private void resolve() {
+        for (CommandBuffer buffer : buffers) {
+            for (int i = 0; i < buffer.size; i++) {
+                Entity entity = slot(buffer.targets[i]);
+                byte op = buffer.ops[i];
+                if (entity == null) continue;
+                if (entity.pending == null) {
+                    // Commands on deleted entities are ignored, like Engine#deleteEntity
+                    if (op != CommandBuffer.CREATE && entity.archetype == null) continue;
+                    entity.pending = op == CommandBuffer.CREATE ? root : entity.archetype;
+                    touched.add(entity);
+                }
+                if (entity.deleted) continue;
+                switch (op) {
+                    case CommandBuffer.DELETE -> entity.deleted = true;
+                    case CommandBuffer.ADD -> {
+                        int id = ComponentRegistry.id(buffer.payloads[i].getClass());
+                        if (entity.pending.signature.get(id)) {
+                            throw new RuntimeException("Entity can only have at most one component of a given class!");
+                        }
+                        entity.pending = withAdded(entity.pending, id);
+                    }
+                    case CommandBuffer.TAG ->
+                            entity.pending = withAdded(entity.pending, ComponentRegistry.id((Class<?>) buffer.payloads[i]));
+                    case CommandBuffer.REMOVE ->
+                            entity.pending = withRemoved(entity.pending, ComponentRegistry.id((Class<?>) buffer.payloads[i]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves touched entities into their final archetype, then writes the added components.
+     */
+    private void apply() {
+        touched.sort(BY_PENDING);
+        int start = 0;
+        while (start < touched.size()) {
+            Entity first = touched.get(start);
+            int end = start + 1;
+            while (end < touched.size() && BY_PENDING.compare(first, touched.get(end)) == 0) end++;
+            if (first.deleted) {
+                for (int i = start; i < end; i++) {
+                    Entity entity = touched.get(i);
+                    if (entity.archetype != null) deleteEntity(entity);
+                }
+            } else {
+                Archetype target = first.pending;
+                target.reserve(end - start);
+                for (int i = start; i < end; i++) {
+                    Entity entity = touched.get(i);
+                    if (entity.archetype == null) {
+                        entity.archetype = target;
+                        entity.row = target.add(entity, tick.get());
+                        observers.transition(entity, null, target);
+                        alive++;
+                    } else {
+                        move(entity, target);
+                    }
+                }
+            }
+            start = end;
+        }
+        // Later additions of a class overwrite earlier ones, components removed afterwards have no column
+        for (CommandBuffer buffer : buffers) {
+            for (int i = 0; i < buffer.size; i++) {
+                if (buffer.ops[i] != CommandBuffer.ADD) continue;
+                Entity entity = slot(buffer.targets[i]);
+                if (entity == null || entity.archetype == null || entity.pending == null) continue;
+                Object component = buffer.payloads[i];
+                Archetype a = entity.archetype;
+                int id = ComponentRegistry.id(component.getClass());
+                a.write(id, entity.row, component);
+                int c = a.column(id);
+                if (c >= 0) {
+                    a.added[c][entity.row] = a.changed[c][entity.row] = tick.get();
+                }
+            }
+        }
+    }
+
+    /**
+     * Calls the observer whenever an entity gets a component (or tag) of the given class, on creation or addition.
+     * Events are delivered in batches at sync points, see {@link #flush()}. The observer gets the component attached
+     * at delivery (null if removed since).
+     */
+    public <T> void onAdd(Class<T> type, ComponentObserver<T> observer) {
+        observers.add(Observers.ADD, type, observer);
+    }
+
+    /**
+     * Calls the observer whenever an entity loses a component (or tag) of the given class, on removal or deletion.
+     * Events are delivered in batches at sync points, see {@link #flush()}.
+     */
+    public <T> void onRemove(Class<T> type, ComponentObserver<T> observer) {
+        observers.add(Observers.REMOVE, type, observer);
+    }
+
+    /**
+     * Calls the observer whenever a component of the given class is replaced through {@link Entity#set(Object)}.
+     * Events are delivered in batches at sync points, see {@link #flush()}.
+     */
+    public <T> void onSet(Class<T> type, ComponentObserver<T> observer) {
+        observers.add(Observers.SET, type, observer);
+    }
+
+    /**
+     * Binds every component of the given class to the entity holding it, now and whenever one is added or set, so
+     * changes made through its setters are stamped as ECS changes (see {@link Tracked}). Calling it again does nothing.
+     */
+    public <T extends Tracked> void track(Class<T> type) {
+        int id = ComponentRegistry.id(type);
+        if (tracked.get(id)) return;
+        tracked.set(id);
+        for (Archetype a : archetypeList) {
+            int c = a.column(id);
+            if (c < 0) continue;
+            for (int r = 0; r < a.size; r++) {
+                ((Tracked) a.columns[c][r]).attached(this, a.entities[r].getHandle());
+            }
+        }
+        ComponentObserver<T> attach = (entity, component) -> {
+            if (component != null) component.attached(this, entity);
+        };
+        onAdd(type, attach);
+        onSet(type, attach);
+        onRemove(type, (entity, component) -> component.detached(entity));
+    }
+
+    /**
+     * @param pool that will run parallel query iteration (see {@link Query#parallelForEach(Each1)}), the common pool by default
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Declare the components the system reads and writes on the returned node to let it run concurrently with others.
+     * Until it does, the system is exclusive and runs on the main thread in insertion order.
+     *
      * @param system that will be attached to this engine
+     * @return node to declare the system's access and ordering on
      */
-    public void addSystem(System system) {
-        systems.add(system);
+    public SystemNode addSystem(System system) {
+        SystemNode node = scheduler.add(system);
+        if (profiler != null) node.profile = new Profile(profiler.window);
+        return node;
     }
 
     /**
-     * Run all systems attached to this engine
+     * Run all systems attached to this engine, returning once they all finished.
      */
     public void run(float delta) {
-        for (System s : systems) {
-            s.run(this, delta);
+        scheduler.run(this, delta);
+    }
+
+    /**
+     * Starts sampling every system on each run, keeping the samples of the last window runs. Previous samples are dropped.
+     * Call between runs.
+     *
+     * @return Profiler holding the frame samples and producing reports
+     */
+    public Profiler enableProfiling(int window) {
+        profiler = new Profiler(this, window);
+        for (SystemNode node : scheduler.nodes) {
+            node.profile = new Profile(window);
         }
+        return profiler;
+    }
+
+    /**
+     * Stops sampling. Samples recorded so far stay readable. Call between runs.
+     */
+    public void disableProfiling() {
+        profiler = null;
+    }
+
+    /**
+     * @return Profiler in use, null if profiling is disabled
+     */
+    public Profiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * @return Scheduler running the systems, holding timings of the last run
+     */
+    public Scheduler getScheduler() {
+        return scheduler;
     }
 
     /**
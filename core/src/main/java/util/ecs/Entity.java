@@ -1,63 +1,180 @@
 package util.ecs;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Entity part of the ECS. No state other than the components it holds.
+ * The components themselves live in the columns of the entity's archetype.
+ * <p>
+ * Entity objects are recycled by their engine once deleted: keep the {@link #getHandle() handle} of an entity, not the
+ * object, to refer to it across frames.
  */
-public final class Entity extends Identifiable {
+public final class Entity {
+    /**
+     * Engine owning the storage of this entity
+     */
+    final Engine engine;
+
+    /**
+     * Slot of this entity in its engine, reused once deleted
+     */
+    final int index;
+
+    /**
+     * Number of times the slot was released, so that handles to previous occupants are detected as stale
+     */
+    int generation;
+
+    /**
+     * Archetype (set of component classes) this entity currently belongs to
+     */
+    Archetype archetype;
+
+    /**
+     * Row of this entity inside its archetype
+     */
+    int row;
+
+    /**
+     * Archetype this entity will end up in once the command buffers are applied, null if not touched by any command
+     */
+    Archetype pending;
+
     /**
-     * components[c] = comp iff component comp is attached to this entity with class c
+     * Whether a command buffer being applied deletes this entity
      */
-    public Map<Class<?>, Object> components;
+    boolean deleted;
+
+    Entity(Engine engine, int index) {
+        this.engine = engine;
+        this.index = index;
+    }
 
     /**
-     * Whether systems will be able to access components of this entity.
+     * @return Handle identifying this entity (and no later occupant of its slot), see {@link Engine#getEntity(long)}
      */
-    private boolean enabled;
+    public long getHandle() {
+        return handle(index, generation);
+    }
+
+    static long handle(int index, int generation) {
+        return (long) generation << 32 | (index & 0xffffffffL);
+    }
+
+    static int index(long handle) {
+        return (int) handle;
+    }
 
-    public Entity() {
-        components = new HashMap<>(5, 1);
-        enabled = false;
+    static int generation(long handle) {
+        return (int) (handle >>> 32);
     }
 
+    /**
+     * Disabled entities are moved to an archetype no query matches.
+     *
+     * @param enabled Whether systems will be able to access components of this entity.
+     */
     public void setEnabled(boolean enabled) {
-        this.enabled = enabled;
+        if (enabled) {
+            untag(Engine.Disabled.class);
+        } else {
+            tag(Engine.Disabled.class);
+        }
     }
 
+    /**
+     * @return Whether systems will be able to access components of this entity.
+     */
     public boolean isEnabled() {
-        return enabled;
+        return !archetype.signature.get(Engine.DISABLED);
+    }
+
+    /**
+     * Sets a tag on this entity, without allocating anything: the entity moves to the archetype with the tag bit set.
+     *
+     * @return same entity for chaining
+     */
+    public Entity tag(Class<? extends Tag> tag) {
+        engine.move(this, engine.withAdded(archetype, ComponentRegistry.id(tag)));
+        return this;
+    }
+
+    /**
+     * Clears a tag from this entity, if set.
+     *
+     * @return same entity for chaining
+     */
+    public Entity untag(Class<? extends Tag> tag) {
+        engine.move(this, engine.withRemoved(archetype, ComponentRegistry.id(tag)));
+        return this;
+    }
+
+    /**
+     * @return Whether the tag is set on this entity
+     */
+    public boolean hasTag(Class<? extends Tag> tag) {
+        return archetype.signature.get(ComponentRegistry.id(tag));
     }
 
     /**
      * Adds a component to this entity. There is no protection for assigning the same component to multiple entities.
+     * Moves the entity into the archetype holding its new set of components.
      *
      * @param component to add
      * @return same entity for chaining
      * @throws RuntimeException if you assign a component of an already attached class
      */
     public Entity add(Object component) {
-        if (components.containsKey(component.getClass())) {
+        int id = ComponentRegistry.id(component.getClass());
+        if (archetype.signature.get(id)) {
             throw new RuntimeException("Entity can only have at most one component of a given class!");
         }
-        components.put(component.getClass(), component);
+        engine.move(this, engine.withAdded(archetype, id));
+        archetype.write(id, row, component);
+        return this;
+    }
+
+    /**
+     * Attaches the component, replacing the component of the same class if present, and marks it changed.
+     *
+     * @param component to set
+     * @return same entity for chaining
+     */
+    public Entity set(Object component) {
+        int id = ComponentRegistry.id(component.getClass());
+        if (!archetype.signature.get(id)) return add(component);
+        archetype.write(id, row, component);
+        markChanged(component.getClass());
+        engine.observers.set(this, id, component);
         return this;
     }
 
+    /**
+     * Marks the component of the given class as changed, for queries filtering on {@link Query#changed(Class[])}.
+     * Needed after mutating a component in place. Changes of {@link Packed} components are not tracked.
+     */
+    public void markChanged(Class<?> component) {
+        int c = archetype.column(component);
+        if (c >= 0) {
+            archetype.changed[c][row] = engine.tick.get();
+        }
+    }
+
     /**
      * @param component class of component
-     * @return null if there is no component, the actual component otherwise
+     * @return null if there is no component, the actual component otherwise (a new copy if {@link Packed})
      */
+    @SuppressWarnings("unchecked")
     public <T> T getComponent(Class<T> component) {
-        return (T) components.get(component);
+        int c = archetype.column(component);
+        if (c >= 0) return (T) archetype.columns[c][row];
+        return (T) archetype.read(ComponentRegistry.id(component), row);
     }
 
     /**
      * Removes a component if present
      */
     public Object remove(Object component) {
-        return components.remove(component.getClass());
+        if (!contains(component)) return null;
+        return removeType(component.getClass());
     }
 
     /**
@@ -66,25 +183,39 @@ public final class Entity extends Identifiable {
      * @return the component that was removed, null oth.
      */
     public Object removeType(Class<?> component) {
-        return components.remove(component);
+        Object removed = getComponent(component);
+        if (removed == null) return null;
+        engine.move(this, engine.withRemoved(archetype, ComponentRegistry.id(component)));
+        return removed;
     }
 
     /**
      * @return Whether the specified component is present (==).
      */
     public boolean contains(Object component) {
-        return components.get(component.getClass()) == component;
+        return getComponent(component.getClass()) == component;
+    }
+
+    /**
+     * @return Bit signature of the component classes attached to this entity (shared with its archetype, do not mutate)
+     */
+    public Signature getSignature() {
+        return archetype.signature;
     }
 
     /**
      * @return Whether there is a component of the specified class.
      */
     public boolean containsType(Class<?> component) {
-        return components.containsKey(component);
+        return archetype.has(component);
     }
 
-    public void dispose() {
-        components = null;
+    /**
+     * @return Whether this entity is attached to its engine. Entities created through a {@link CommandBuffer} are not
+     * until the buffer is applied.
+     */
+    public boolean isAlive() {
+        return archetype != null;
     }
 
 }
@@ -0,0 +1,155 @@
+package util.ecs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Lifecycle observers of an engine. Events are recorded as entities change archetype, and delivered in a batch at
+ * the next sync point (see {@link Engine#flush()}), so observers never run while storage is being iterated.
+ */
+final class Observers {
+    static final byte ADD = 0, REMOVE = 1, SET = 2, ENTER = 3, EXIT = 4;
+
+    /**
+     * Ids of the component types having observers
+     */
+    private int[] types;
+
+    /**
+     * byKind[kind][id] = observers of events of that kind (ADD, REMOVE or SET) on the component type id, may be null
+     */
+    private List<ComponentObserver<Object>>[][] byKind;
+
+    /**
+     * Queries with enter/exit listeners
+     */
+    final List<Query> queries;
+
+    /**
+     * Pending event i is of kind kinds[i], on the entity handles[i]. keys[i] is the component type id for component
+     * events, payloads[i] the removed/set component or the query for enter/exit events.
+     */
+    private byte[] kinds;
+    private int[] keys;
+    private long[] handles;
+    private Object[] payloads;
+    private int size;
+
+    Observers() {
+        types = new int[0];
+        // Generic arrays cannot be created, only cast to
+        @SuppressWarnings("unchecked")
+        List<ComponentObserver<Object>>[][] byKind = (List<ComponentObserver<Object>>[][]) new List<?>[3][0];
+        this.byKind = byKind;
+        queries = new ArrayList<>();
+        kinds = new byte[16];
+        keys = new int[16];
+        handles = new long[16];
+        payloads = new Object[16];
+    }
+
+    <T> void add(byte kind, Class<T> type, ComponentObserver<T> observer) {
+        int id = ComponentRegistry.id(type);
+        if (id >= byKind[kind].length) {
+            byKind[kind] = Arrays.copyOf(byKind[kind], id + 1);
+        }
+        if (byKind[kind][id] == null) {
+            byKind[kind][id] = new ArrayList<>();
+        }
+        // Delivery passes each observer components of its type only
+        @SuppressWarnings("unchecked")
+        ComponentObserver<Object> erased = (ComponentObserver<Object>) observer;
+        byKind[kind][id].add(erased);
+        if (Arrays.stream(types).noneMatch(t -> t == id)) {
+            types = Arrays.copyOf(types, types.length + 1);
+            types[types.length - 1] = id;
+        }
+    }
+
+    /**
+     * Records the events caused by an entity moving between archetypes, while it still lives at its row in from.
+     *
+     * @param from archetype before the change, null on creation
+     * @param to   archetype after the change, null on deletion
+     */
+    void transition(Entity entity, Archetype from, Archetype to) {
+        if (types.length == 0 && queries.isEmpty()) return;
+        long handle = entity.getHandle();
+        for (int id : types) {
+            boolean had = from != null && from.signature.get(id), has = to != null && to.signature.get(id);
+            if (has && !had) {
+                if (observed(ADD, id)) record(ADD, id, handle, null);
+            } else if (had && !has && observed(REMOVE, id)) {
+                record(REMOVE, id, handle, from.read(id, entity.row));
+            }
+        }
+        for (int i = 0; i < queries.size(); i++) {
+            Query query = queries.get(i);
+            boolean was = from != null && query.matches(from), is = to != null && query.matches(to);
+            if (is && !was) {
+                record(ENTER, -1, handle, query);
+            } else if (was && !is) {
+                record(EXIT, -1, handle, query);
+            }
+        }
+    }
+
+    /**
+     * Records that a component was replaced.
+     */
+    void set(Entity entity, int id, Object component) {
+        if (observed(SET, id)) {
+            record(SET, id, entity.getHandle(), component);
+        }
+    }
+
+    private boolean observed(byte kind, int id) {
+        return id < byKind[kind].length && byKind[kind][id] != null;
+    }
+
+    private void record(byte kind, int key, long handle, Object payload) {
+        if (size == kinds.length) {
+            int capacity = size << 1;
+            kinds = Arrays.copyOf(kinds, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            handles = Arrays.copyOf(handles, capacity);
+            payloads = Arrays.copyOf(payloads, capacity);
+        }
+        kinds[size] = kind;
+        keys[size] = key;
+        handles[size] = handle;
+        payloads[size] = payload;
+        size++;
+    }
+
+    /**
+     * Delivers pending events in the order they happened. Events caused by observers are delivered in the same batch.
+     * Added components are read at delivery, null if no longer there.
+     */
+    void deliver(Engine engine) {
+        for (int i = 0; i < size; i++) {
+            byte kind = kinds[i];
+            long handle = handles[i];
+            Object payload = payloads[i];
+            payloads[i] = null;
+            if (kind == ENTER || kind == EXIT) {
+                Query query = (Query) payload;
+                for (LongConsumer listener : kind == ENTER ? query.onEnter : query.onExit) {
+                    listener.accept(handle);
+                }
+                continue;
+            }
+            int id = keys[i];
+            if (kind == ADD) {
+                Entity entity = engine.getEntity(handle);
+                payload = entity == null ? null : entity.archetype.read(id, entity.row);
+            }
+            for (ComponentObserver<Object> observer : byKind[kind][id]) {
+                observer.accept(handle, payload);
+            }
+        }
+        size = 0;
+    }
+}
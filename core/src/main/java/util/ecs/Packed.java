@@ -0,0 +1,28 @@
+package util.ecs;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marker for components stored as struct-of-arrays: every non-static float field of the class gets its own float[]
+ * column in archetypes, so a system can loop over contiguous primitive arrays instead of chasing component objects.
+ * Instances only carry values into and out of the columns (see {@link Entity#add(Object)} and
+ * {@link Entity#getComponent(Class)}), systems access the columns per chunk, see {@link Query#forEachChunk}.
+ * <p>
+ * Packed classes need a no-argument constructor and a {@link Layout} listing their float fields in column order.
+ * Look up the column of a field with {@link ComponentRegistry#field}.
+ */
+public interface Packed {
+    /**
+     * Column order of the float fields of a packed class, which must list every non-static float field once.
+     * Reflection does not guarantee the declaration order, so columns follow this list: fields listed next to each
+     * other get consecutive columns.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE)
+    @interface Layout {
+        String[] value();
+    }
+}
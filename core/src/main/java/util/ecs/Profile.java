@@ -0,0 +1,105 @@
+package util.ecs;
+
+import java.util.Arrays;
+
+/**
+ * Rolling window of samples of a system (or of whole frames), see {@link Profiler}.
+ * Read it between runs: samples are recorded while the engine runs.
+ */
+public final class Profile {
+    public enum Metric {
+        /**
+         * Wall time, in nanoseconds
+         */
+        TIME,
+        /**
+         * Entities matched by the queries iterated (summed over iterations)
+         */
+        ENTITIES,
+        /**
+         * Bytes allocated by the thread running the system, see {@link Profiler#isAllocationSupported()}
+         */
+        ALLOCATED
+    }
+
+    /**
+     * samples[metric][i], oldest overwritten first
+     */
+    private final long[][] samples;
+
+    /**
+     * Slot of the next sample, and number of samples held
+     */
+    private int next, count;
+
+    /**
+     * Scratch space for percentiles
+     */
+    private final long[] sorted;
+
+    Profile(int window) {
+        samples = new long[Metric.values().length][window];
+        sorted = new long[window];
+    }
+
+    void record(long time, long entities, long allocated) {
+        samples[Metric.TIME.ordinal()][next] = time;
+        samples[Metric.ENTITIES.ordinal()][next] = entities;
+        samples[Metric.ALLOCATED.ordinal()][next] = allocated;
+        next = (next + 1) % sorted.length;
+        count = Math.min(count + 1, sorted.length);
+    }
+
+    /**
+     * @return Number of samples held, at most the window of the profiler
+     */
+    public int getSamples() {
+        return count;
+    }
+
+    /**
+     * @return Most recent sample, 0 if none
+     */
+    public long last(Metric metric) {
+        if (count == 0) return 0;
+        return samples[metric.ordinal()][(next - 1 + sorted.length) % sorted.length];
+    }
+
+    public long min(Metric metric) {
+        long[] s = samples[metric.ordinal()];
+        long min = count == 0 ? 0 : Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) min = Math.min(min, s[i]);
+        return min;
+    }
+
+    public long max(Metric metric) {
+        long[] s = samples[metric.ordinal()];
+        long max = 0;
+        for (int i = 0; i < count; i++) max = Math.max(max, s[i]);
+        return max;
+    }
+
+    public double avg(Metric metric) {
+        if (count == 0) return 0;
+        long[] s = samples[metric.ordinal()];
+        double sum = 0;
+        for (int i = 0; i < count; i++) sum += s[i];
+        return sum / count;
+    }
+
+    /**
+     * @param p in (0, 1]
+     * @return Smallest sample such that a fraction p of the samples are less or equal (nearest rank), 0 if none
+     */
+    public long percentile(Metric metric, double p) {
+        if (count == 0) return 0;
+        java.lang.System.arraycopy(samples[metric.ordinal()], 0, sorted, 0, count);
+        Arrays.sort(sorted, 0, count);
+        int rank = (int) Math.ceil(p * count);
+        return sorted[Math.max(0, Math.min(count, rank) - 1)];
+    }
+
+    public long p99(Metric metric) {
+        return percentile(metric, 0.99);
+    }
+}
@@ -0,0 +1,132 @@
+package util.ecs;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Samples every system of an engine each run: wall time, entities matched by the queries it iterated and bytes
+ * allocated by the thread running it. Samples are kept in rolling windows, see {@link SystemNode#getProfile()}.
+ * Enabled through {@link Engine#enableProfiling(int)}; when disabled, systems and queries only pay a null check.
+ * <p>
+ * Entities are counted on the thread running the system, including parallel iterations, but allocations made by pool
+ * threads during parallel iteration are not attributed to the system. Iterations filtered on changes
+ * (see {@link Query#changed(Class[])}) only count the rows passing the filters.
+ */
+public final class Profiler {
+    final Engine engine;
+
+    /**
+     * Number of runs kept
+     */
+    final int window;
+
+    /**
+     * Whole frames: run time of {@link Engine#run(float)}, living entities and bytes allocated by all systems
+     */
+    private final Profile frame;
+
+    /**
+     * Allocation counters, null if the JVM does not provide them
+     */
+    private final com.sun.management.ThreadMXBean threads;
+
+    /**
+     * Entities matched by queries since the system running on the thread started
+     */
+    private final ThreadLocal<long[]> matched;
+
+    Profiler(Engine engine, int window) {
+        if (window <= 0) {
+            throw new RuntimeException("Profiling window must be positive!");
+        }
+        this.engine = engine;
+        this.window = window;
+        this.frame = new Profile(window);
+        this.matched = ThreadLocal.withInitial(() -> new long[1]);
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean threads = null;
+        if (bean instanceof com.sun.management.ThreadMXBean sun && sun.isThreadAllocatedMemorySupported()) {
+            sun.setThreadAllocatedMemoryEnabled(true);
+            threads = sun;
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Called on the thread about to run a system
+     *
+     * @return Allocation counter of the thread
+     */
+    long begin() {
+        matched.get()[0] = 0;
+        return allocated();
+    }
+
+    /**
+     * Called on the thread that just ran the system, with the value {@link #begin()} returned
+     */
+    void end(SystemNode node, long allocatedBefore) {
+        node.profile.record(node.getRunTime(), matched.get()[0], allocated() - allocatedBefore);
+    }
+
+    /**
+     * Called once all systems of a run finished
+     */
+    void endFrame(long time) {
+        long allocated = 0;
+        for (SystemNode node : engine.scheduler.nodes) {
+            allocated += node.profile.last(Profile.Metric.ALLOCATED);
+        }
+        frame.record(time, engine.getEntityCount(), allocated);
+    }
+
+    /**
+     * Counts entities matched by a query iterated on the calling thread
+     */
+    void matched(long entities) {
+        matched.get()[0] += entities;
+    }
+
+    private long allocated() {
+        return threads == null ? 0 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * @return Whether {@link Profile.Metric#ALLOCATED} is measured, it stays 0 otherwise
+     */
+    public boolean isAllocationSupported() {
+        return threads != null;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * @return Samples of whole runs. {@link Profile.Metric#ENTITIES} holds the number of living entities.
+     */
+    public Profile getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return Human-readable min/avg/p99 of every system over the window, one system per line (times in
+     * milliseconds, allocations in kilobytes)
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-24s %s, %d entities%n", "frame", times(frame), frame.last(Profile.Metric.ENTITIES)));
+        for (SystemNode node : engine.scheduler.nodes) {
+            Profile p = node.profile;
+            sb.append(String.format("%-24s %s, entities avg %.0f, allocated avg %.1f p99 %.1f%n", node.name, times(p),
+                    p.avg(Profile.Metric.ENTITIES),
+                    p.avg(Profile.Metric.ALLOCATED) / 1024, p.p99(Profile.Metric.ALLOCATED) / 1024.));
+        }
+        return sb.toString();
+    }
+
+    private static String times(Profile p) {
+        return String.format("run min %.3f avg %.3f p99 %.3f", p.min(Profile.Metric.TIME) / 1e6,
+                p.avg(Profile.Metric.TIME) / 1e6, p.p99(Profile.Metric.TIME) / 1e6);
+    }
+}
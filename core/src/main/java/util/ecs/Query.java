@@ -0,0 +1,726 @@
+package util.ecs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Long-lived set of entities having all components of a set of classes.
+ * A query is registered with its engine, which adds every new matching archetype to it as soon as the archetype is created.
+ * Since entities move between archetypes when they are created, deleted, enabled, disabled or change components,
+ * the matched set is always up-to-date and iterating costs O(matches), not O(all entities).
+ * Iteration can further be restricted to entities whose components changed since the previous one, see {@link #changed(Class[])}.
+ */
+public final class Query {
+    /**
+     * Engine this query is registered with
+     */
+    final Engine engine;
+
+    /**
+     * Type ids of the requested components, in the order they were requested. Optional terms are not part of with,
+     * their column is -1 in archetypes not storing them.
+     */
+    final int[] ids;
+
+    /**
+     * Archetypes must contain all bits of with and none of without
+     */
+    final Signature with, without;
+
+    /**
+     * Position of the first term without an object column ({@link Packed} or {@link Tag}), ids.length if none
+     */
+    private final int firstUnstored;
+
+    /**
+     * Archetypes currently matching this query
+     */
+    final List<Archetype> archetypes;
+
+    /**
+     * columns[i][t] = column of term ids[t] in archetypes.get(i)
+     */
+    int[][] columns;
+
+    /**
+     * Number of rows per parallel task. The default keeps the columns touched by a task within a core's cache.
+     */
+    private int chunkSize = 2048;
+
+    /**
+     * Below this many matches, parallel iteration runs sequentially on the calling thread
+     */
+    private int parallelThreshold = 8192;
+
+    /**
+     * Positions (in ids) of the terms an entity must have changed (or added) to be iterated, and of the terms
+     * marked changed on every iterated entity
+     */
+    private int[] changedTerms = new int[0], addedTerms = new int[0], writeTerms = new int[0];
+
+    /**
+     * Listeners of entities entering and leaving the matched set
+     */
+    final List<LongConsumer> onEnter = new ArrayList<>(), onExit = new ArrayList<>();
+
+    /**
+     * Engine tick at the start of the last filtered iteration, changes stamped after it are visited by the next one
+     */
+    private int lastTick;
+
+    /**
+     * Reused by sequential filtered iterations, see {@link #tracked(int, Object)}
+     */
+    private final Tracker tracker = new Tracker();
+
+    /**
+     * @param ids    type ids of the terms, required or optional
+     * @param with   required types
+     * @param without excluded types (on top of disabled entities)
+     */
+    Query(Engine engine, int[] ids, Signature with, Signature without) {
+        this.engine = engine;
+        this.ids = ids;
+        this.with = with;
+        int firstUnstored = ids.length;
+        for (int t = ids.length - 1; t >= 0; t--) {
+            if (ComponentRegistry.isPacked(ids[t]) || ComponentRegistry.isTag(ids[t])) firstUnstored = t;
+        }
+        this.firstUnstored = firstUnstored;
+        this.without = without.set(Engine.DISABLED);
+        this.archetypes = new ArrayList<>();
+        this.columns = new int[4][];
+    }
+
+    /**
+     * @return Whether entities of the archetype belong to this query
+     */
+    boolean matches(Archetype archetype) {
+        return archetype.signature.containsAll(with) && !archetype.signature.intersects(without);
+    }
+
+    /**
+     * Adds an archetype to this query if it matches. Called by the engine for every archetype.
+     */
+    void register(Archetype archetype) {
+        if (!matches(archetype)) return;
+        int i = archetypes.size();
+        if (i == columns.length) {
+            columns = Arrays.copyOf(columns, i << 1);
+        }
+        int[] cols = new int[ids.length];
+        for (int t = 0; t < ids.length; t++) {
+            cols[t] = archetype.column(ids[t]);
+        }
+        columns[i] = cols;
+        archetypes.add(archetype);
+    }
+
+    /**
+     * @param chunkSize Number of rows processed per parallel task
+     * @return this query for chaining
+     */
+    public Query setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive!");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * @param parallelThreshold Minimum number of matches before parallel iteration actually forks (0 to always fork)
+     * @return this query for chaining
+     */
+    public Query setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+        return this;
+    }
+
+    /**
+     * Calls the listener with the handle of every entity that starts matching this query: on creation, when it gets
+     * the components, or when enabled. Events are delivered in batches at sync points, see {@link Engine#flush()}.
+     *
+     * @return this query for chaining
+     */
+    public Query onEnter(LongConsumer listener) {
+        onEnter.add(listener);
+        observe();
+        return this;
+    }
+
+    /**
+     * Calls the listener with the handle of every entity that stops matching this query: on deletion, when it loses
+     * the components, or when disabled. Events are delivered in batches at sync points, see {@link Engine#flush()}.
+     *
+     * @return this query for chaining
+     */
+    public Query onExit(LongConsumer listener) {
+        onExit.add(listener);
+        observe();
+        return this;
+    }
+
+    private void observe() {
+        if (!engine.observers.queries.contains(this)) {
+            engine.observers.queries.add(this);
+        }
+    }
+
+    /**
+     * Only iterate entities whose components of the given classes changed (or were added) since the previous
+     * iteration of this query. Changes are stamped when components are added or set, see {@link Entity#set(Object)},
+     * {@link Entity#markChanged(Class)} and {@link #writes(Class[])}.
+     *
+     * @param types terms of this query
+     * @return this query for chaining
+     */
+    public Query changed(Class<?>... types) {
+        changedTerms = terms(types);
+        return this;
+    }
+
+    /**
+     * Only iterate entities that got components of the given classes since the previous iteration of this query.
+     *
+     * @param types terms of this query
+     * @return this query for chaining
+     */
+    public Query added(Class<?>... types) {
+        addedTerms = terms(types);
+        return this;
+    }
+
+    /**
+     * Marks the components of the given classes changed on every iterated entity, for other queries filtering on them.
+     * Changes this query makes are not visible to its own next iteration.
+     *
+     * @param types terms of this query
+     * @return this query for chaining
+     */
+    public Query writes(Class<?>... types) {
+        writeTerms = terms(types);
+        return this;
+    }
+
+    /**
+     * @return Positions of the types in ids
+     */
+    private int[] terms(Class<?>[] types) {
+        int[] terms = new int[types.length];
+        outer:
+        for (int i = 0; i < types.length; i++) {
+            int id = ComponentRegistry.id(types[i]);
+            if (ComponentRegistry.isPacked(id) || ComponentRegistry.isTag(id)) {
+                throw new RuntimeException("Changes of tags and packed components are not tracked!");
+            }
+            for (int t = 0; t < ids.length; t++) {
+                if (ids[t] == id) {
+                    terms[i] = t;
+                    continue outer;
+                }
+            }
+            throw new RuntimeException(types[i].getSimpleName() + " is not a term of this query!");
+        }
+        return terms;
+    }
+
+    /**
+     * @return Whether iteration has to look at change ticks
+     */
+    private boolean tracking() {
+        return changedTerms.length + addedTerms.length + writeTerms.length > 0;
+    }
+
+    /**
+     * Starts an iteration looking at change ticks.
+     *
+     * @return kernel running the given one over the rows passing the change filters only
+     */
+    private Tracker track(Kernel kernel) {
+        return new Tracker().start(Tracker.KERNEL, kernel);
+    }
+
+    /**
+     * Runs a sequential iteration looking at change ticks, calling the action (see {@link Tracker#arity}) on the rows
+     * passing the change filters. Reuses the tracker of this query, so filtered iteration does not allocate.
+     */
+    private void tracked(int arity, Object action) {
+        Tracker t = tracker;
+        if (t.busy) {
+            // Re-entrant iteration of this same query
+            t = new Tracker();
+        }
+        t.busy = true;
+        try {
+            sequential(t.start(arity, action));
+            t.profile();
+        } finally {
+            t.busy = false;
+            t.action = null;
+        }
+    }
+
+    /**
+     * Kernel of an iteration looking at change ticks
+     */
+    private final class Tracker implements Kernel {
+        static final int KERNEL = -2, ENTITIES = -1, CHUNKS = 0;
+
+        /**
+         * What action is: a Kernel, a Consumer of entities or of chunks, or an Each of that arity (1 to 6)
+         */
+        int arity;
+        Object action;
+
+        /**
+         * Rows with changes stamped after since pass, now is stamped on written terms
+         */
+        int since, now;
+
+        boolean busy;
+
+        /**
+         * Rows that passed the filters since start, counted from every thread running this
+         */
+        final LongAdder visited = new LongAdder();
+
+        Tracker start(int arity, Object action) {
+            this.arity = arity;
+            this.action = action;
+            visited.reset();
+            now = engine.tick.getAndIncrement();
+            since = lastTick;
+            lastTick = now;
+            return this;
+        }
+
+        @Override
+        public void run(Archetype a, int[] cols, int from, int to) {
+            for (int r = from; r < to; ) {
+                while (r < to && !passes(a, cols, r, since)) r++;
+                int start = r;
+                while (r < to && passes(a, cols, r, since)) r++;
+                if (r > start) {
+                    visited.add(r - start);
+                    call(a, cols, start, r);
+                    for (int t : writeTerms) {
+                        if (cols[t] >= 0) Arrays.fill(a.changed[cols[t]], start, r, now);
+                    }
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void call(Archetype a, int[] cols, int from, int to) {
+            switch (arity) {
+                case KERNEL -> ((Kernel) action).run(a, cols, from, to);
+                case ENTITIES -> {
+                    Consumer<Entity> consumer = (Consumer<Entity>) action;
+                    for (int r = from; r < to; r++) consumer.accept(a.entities[r]);
+                }
+                case CHUNKS -> ((Consumer<Chunk>) action).accept(new Chunk(a, ids, cols, from, to));
+                case 1 -> each((Each1<Object>) action, a, cols, from, to);
+                case 2 -> each((Each2<Object, Object>) action, a, cols, from, to);
+                case 3 -> each((Each3<Object, Object, Object>) action, a, cols, from, to);
+                case 4 -> each((Each4<Object, Object, Object, Object>) action, a, cols, from, to);
+                case 5 -> each((Each5<Object, Object, Object, Object, Object>) action, a, cols, from, to);
+                case 6 -> each((Each6<Object, Object, Object, Object, Object, Object>) action, a, cols, from, to);
+            }
+        }
+
+        /**
+         * Counts the rows visited towards the system iterating, if profiling. Call once the iteration is over.
+         */
+        void profile() {
+            Profiler profiler = engine.profiler;
+            if (profiler != null) profiler.matched(visited.sum());
+        }
+    }
+
+    private boolean passes(Archetype a, int[] cols, int row, int since) {
+        for (int t : changedTerms) {
+            if (cols[t] < 0 || a.changed[cols[t]][row] <= since) return false;
+        }
+        for (int t : addedTerms) {
+            if (cols[t] < 0 || a.added[cols[t]][row] <= since) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Runs the kernel over every matching row on the calling thread
+     */
+    private void sequential(Kernel kernel) {
+        for (int i = 0; i < archetypes.size(); i++) {
+            kernel.run(archetypes.get(i), columns[i], 0, archetypes.get(i).size);
+        }
+    }
+
+    /**
+     * @return Number of entities currently matching this query
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < archetypes.size(); i++) {
+            size += archetypes.get(i).size;
+        }
+        return size;
+    }
+
+    /**
+     * Counts the matched entities towards the system iterating, if profiling. Iterations filtered on changes count
+     * the rows they visit instead, see {@link Tracker#profile()}.
+     */
+    private void profile() {
+        Profiler profiler = engine.profiler;
+        if (profiler != null && !tracking()) profiler.matched(size());
+    }
+
+    /**
+     * @return Whether the entity currently matches this query
+     */
+    public boolean contains(Entity entity) {
+        return entity.archetype != null && matches(entity.archetype);
+    }
+
+    /**
+     * Performs the action for every matching entity. Do not add or remove components while iterating.
+     */
+    public void forEachEntity(Consumer<Entity> action) {
+        profile();
+        if (tracking()) {
+            tracked(Tracker.ENTITIES, action);
+            return;
+        }
+        for (int i = 0; i < archetypes.size(); i++) {
+            Archetype a = archetypes.get(i);
+            Entity[] entities = a.entities;
+            for (int r = 0; r < a.size; r++) {
+                action.accept(entities[r]);
+            }
+        }
+    }
+
+    /**
+     * Calls each with the first requested component of every matching entity.
+     * Allocation-free and re-entrant: queries may be nested inside the callback. Do not add or remove components while iterating.
+     */
+    public <T> void forEach(Each1<T> each) {
+        checkArity(1);
+        profile();
+        if (tracking()) {
+            tracked(1, each);
+            return;
+        }
+        for (int i = 0; i < archetypes.size(); i++) {
+            each(each, archetypes.get(i), columns[i], 0, archetypes.get(i).size);
+        }
+    }
+
+    /**
+     * Calls each for rows [from, to) of the archetype, whose columns for the query terms are cols.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> void each(Each1<T> each, Archetype a, int[] cols, int from, int to) {
+        Object[] c1 = a.objects(cols[0]);
+        for (int r = from; r < to; r++) {
+            each.accept((T) c1[r]);
+        }
+    }
+
+    /**
+     * Calls each with the first 2 requested components of every matching entity.
+     * Allocation-free and re-entrant: queries may be nested inside the callback. Do not add or remove components while iterating.
+     */
+    public <T1, T2> void forEach(Each2<T1, T2> each) {
+        checkArity(2);
+        profile();
+        if (tracking()) {
+            tracked(2, each);
+            return;
+        }
+        for (int i = 0; i < archetypes.size(); i++) {
+            each(each, archetypes.get(i), columns[i], 0, archetypes.get(i).size);
+        }
+    }
+
+    /**
+     * Calls each for rows [from, to) of the archetype, whose columns for the query terms are cols.
+     */
+    @SuppressWarnings("unchecked")
+    static <T1, T2> void each(Each2<T1, T2> each, Archetype a, int[] cols, int from, int to) {
+        Object[] c1 = a.objects(cols[0]), c2 = a.objects(cols[1]);
+        for (int r = from; r < to; r++) {
+            each.accept((T1) c1[r], (T2) c2[r]);
+        }
+    }
+
+    /**
+     * Calls each with the first 3 requested components of every matching entity.
+     * Allocation-free and re-entrant: queries may be nested inside the callback. Do not add or remove components while iterating.
+     */
+    public <T1, T2, T3> void forEach(Each3<T1, T2, T3> each) {
+        checkArity(3);
+        profile();
+        if (tracking()) {
+            tracked(3, each);
+            return;
+        }
+        for (int i = 0; i < archetypes.size(); i++) {
+            each(each, archetypes.get(i), columns[i], 0, archetypes.get(i).size);
+        }
+    }
+
+    /**
+     * Calls each for rows [from, to) of the archetype, whose columns for the query terms are cols.
+     */
+    @SuppressWarnings("unchecked")
+    static <T1, T2, T3> void each(Each3<T1, T2, T3> each, Archetype a, int[] cols, int from, int to) {
+        Object[] c1 = a.objects(cols[0]), c2 = a.objects(cols[1]), c3 = a.objects(cols[2]);
+        for (int r = from; r < to; r++) {
+            each.accept((T1) c1[r], (T2) c2[r], (T3) c3[r]);
+        }
+    }
+
+    /**
+     * Calls each with the first 4 requested components of every matching entity.
+     * Allocation-free and re-entrant: queries may be nested inside the callback. Do not add or remove components while iterating.
+     */
+    public <T1, T2, T3, T4> void forEach(Each4<T1, T2, T3, T4> each) {
+        checkArity(4);
+        profile();
+        if (tracking()) {
+            tracked(4, each);
+            return;
+        }
+        for (int i = 0; i < archetypes.size(); i++) {
+            each(each, archetypes.get(i), columns[i], 0, archetypes.get(i).size);
+        }
+    }
+
+    /**
+     * Calls each for rows [from, to) of the archetype, whose columns for the query terms are cols.
+     */
+    @SuppressWarnings("unchecked")
+    static <T1, T2, T3, T4> void each(Each4<T1, T2, T3, T4> each, Archetype a, int[] cols, int from, int to) {
+        Object[] c1 = a.objects(cols[0]), c2 = a.objects(cols[1]), c3 = a.objects(cols[2]), c4 = a.objects(cols[3]);
+        for (int r = from; r < to; r++) {
+            each.accept((T1) c1[r], (T2) c2[r], (T3) c3[r], (T4) c4[r]);
+        }
+    }
+
+    /**
+     * Calls each with the first 5 requested components of every matching entity.
+     * Allocation-free and re-entrant: queries may be nested inside the callback. Do not add or remove components while iterating.
+     */
+    public <T1, T2, T3, T4, T5> void forEach(Each5<T1, T2, T3, T4, T5> each) {
+        checkArity(5);
+        profile();
+        if (tracking()) {
+            tracked(5, each);
+            return;
+        }
+        for (int i = 0; i < archetypes.size(); i++) {
+            each(each, archetypes.get(i), columns[i], 0, archetypes.get(i).size);
+        }
+    }
+
+    /**
+     * Calls each for rows [from, to) of the archetype, whose columns for the query terms are cols.
+     */
+    @SuppressWarnings("unchecked")
+    static <T1, T2, T3, T4, T5> void each(Each5<T1, T2, T3, T4, T5> each, Archetype a, int[] cols, int from, int to) {
+        Object[] c1 = a.objects(cols[0]), c2 = a.objects(cols[1]), c3 = a.objects(cols[2]), c4 = a.objects(cols[3]), c5 = a.objects(cols[4]);
+        for (int r = from; r < to; r++) {
+            each.accept((T1) c1[r], (T2) c2[r], (T3) c3[r], (T4) c4[r], (T5) c5[r]);
+        }
+    }
+
+    /**
+     * Calls each with the first 6 requested components of every matching entity.
+     * Allocation-free and re-entrant: queries may be nested inside the callback. Do not add or remove components while iterating.
+     */
+    public <T1, T2, T3, T4, T5, T6> void forEach(Each6<T1, T2, T3, T4, T5, T6> each) {
+        checkArity(6);
+        profile();
+        if (tracking()) {
+            tracked(6, each);
+            return;
+        }
+        for (int i = 0; i < archetypes.size(); i++) {
+            each(each, archetypes.get(i), columns[i], 0, archetypes.get(i).size);
+        }
+    }
+
+    /**
+     * Calls each for rows [from, to) of the archetype, whose columns for the query terms are cols.
+     */
+    @SuppressWarnings("unchecked")
+    static <T1, T2, T3, T4, T5, T6> void each(Each6<T1, T2, T3, T4, T5, T6> each, Archetype a, int[] cols, int from, int to) {
+        Object[] c1 = a.objects(cols[0]), c2 = a.objects(cols[1]), c3 = a.objects(cols[2]), c4 = a.objects(cols[3]), c5 = a.objects(cols[4]), c6 = a.objects(cols[5]);
+        for (int r = from; r < to; r++) {
+            each.accept((T1) c1[r], (T2) c2[r], (T3) c3[r], (T4) c4[r], (T5) c5[r], (T6) c6[r]);
+        }
+    }
+
+    /**
+     * Calls action with every run of matching rows, one archetype at a time. Gives direct access to the columns,
+     * including the float columns of {@link Packed} components. Do not add or remove components while iterating.
+     */
+    public void forEachChunk(Consumer<Chunk> action) {
+        profile();
+        if (tracking()) {
+            tracked(Tracker.CHUNKS, action);
+            return;
+        }
+        for (int i = 0; i < archetypes.size(); i++) {
+            action.accept(new Chunk(archetypes.get(i), ids, columns[i], 0, archetypes.get(i).size));
+        }
+    }
+
+    /**
+     * Parallel version of {@link #forEachChunk(Consumer)}: chunks hold at most chunkSize rows.
+     * The action must only touch the rows of the chunk it is given.
+     */
+    public void parallelForEachChunk(Consumer<Chunk> action) {
+        parallel(0, (a, cols, from, to) -> action.accept(new Chunk(a, ids, cols, from, to)));
+    }
+
+    /**
+     * Parallel version of {@link #forEach(Each1)}. Each must only touch the components it is given.
+     */
+    public <T> void parallelForEach(Each1<T> each) {
+        parallel(1, (a, cols, from, to) -> each(each, a, cols, from, to));
+    }
+
+    /**
+     * Parallel version of {@link #forEach(Each2)}. Each must only touch the components it is given.
+     */
+    public <T1, T2> void parallelForEach(Each2<T1, T2> each) {
+        parallel(2, (a, cols, from, to) -> each(each, a, cols, from, to));
+    }
+
+    /**
+     * Parallel version of {@link #forEach(Each3)}. Each must only touch the components it is given.
+     */
+    public <T1, T2, T3> void parallelForEach(Each3<T1, T2, T3> each) {
+        parallel(3, (a, cols, from, to) -> each(each, a, cols, from, to));
+    }
+
+    /**
+     * Parallel version of {@link #forEach(Each4)}. Each must only touch the components it is given.
+     */
+    public <T1, T2, T3, T4> void parallelForEach(Each4<T1, T2, T3, T4> each) {
+        parallel(4, (a, cols, from, to) -> each(each, a, cols, from, to));
+    }
+
+    /**
+     * Parallel version of {@link #forEach(Each5)}. Each must only touch the components it is given.
+     */
+    public <T1, T2, T3, T4, T5> void parallelForEach(Each5<T1, T2, T3, T4, T5> each) {
+        parallel(5, (a, cols, from, to) -> each(each, a, cols, from, to));
+    }
+
+    /**
+     * Parallel version of {@link #forEach(Each6)}. Each must only touch the components it is given.
+     */
+    public <T1, T2, T3, T4, T5, T6> void parallelForEach(Each6<T1, T2, T3, T4, T5, T6> each) {
+        parallel(6, (a, cols, from, to) -> each(each, a, cols, from, to));
+    }
+
+    /**
+     * Runs the kernel over every matching row. Rows are split into chunks of chunkSize consecutive rows (possibly
+     * spanning several archetypes) forked on the engine's pool, unless there are fewer rows than parallelThreshold.
+     */
+    private void parallel(int arity, Kernel kernel) {
+        checkArity(arity);
+        profile();
+        Tracker tracker = tracking() ? track(kernel) : null;
+        if (tracker != null) kernel = tracker;
+        int n = archetypes.size();
+        // offsets[i] = index of the first row of archetypes.get(i) if all matches were laid out contiguously
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] = offsets[i] + archetypes.get(i).size;
+        }
+        if (offsets[n] < parallelThreshold) {
+            sequential(kernel);
+        } else {
+            engine.pool.invoke(new ChunkTask(kernel, offsets, 0, offsets[n]));
+        }
+        if (tracker != null) tracker.profile();
+    }
+
+    /**
+     * Loop over rows [from, to) of an archetype
+     */
+    interface Kernel {
+        void run(Archetype archetype, int[] cols, int from, int to);
+    }
+
+    /**
+     * Fork-join task over the contiguous row range [from, to) of all matches
+     */
+    private final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Kernel kernel;
+        private final int[] offsets;
+        private final int from, to;
+
+        ChunkTask(Kernel kernel, int[] offsets, int from, int to) {
+            this.kernel = kernel;
+            this.offsets = offsets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            int chunks = (to - from + chunkSize - 1) / chunkSize;
+            if (chunks > 1) {
+                // split on a chunk boundary
+                int mid = from + (chunks / 2) * chunkSize;
+                invokeAll(new ChunkTask(kernel, offsets, from, mid), new ChunkTask(kernel, offsets, mid, to));
+                return;
+            }
+            // Largest i with offsets[i] <= from, which skips empty archetypes
+            int lo = 0, hi = archetypes.size() - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (offsets[mid] <= from) lo = mid;
+                else hi = mid - 1;
+            }
+            for (int i = lo, start = from; start < to; i++) {
+                int end = Math.min(to, offsets[i + 1]);
+                if (end > start) {
+                    kernel.run(archetypes.get(i), columns[i], start - offsets[i], end - offsets[i]);
+                }
+                start = Math.max(start, end);
+            }
+        }
+    }
+
+    private void checkArity(int arity) {
+        if (ids.length < arity) {
+            throw new RuntimeException("Query requested " + ids.length + " components, cannot iterate " + arity + "!");
+        }
+        if (arity > firstUnstored) {
+            throw new RuntimeException("Tags and packed components have no object column to iterate!");
+        }
+    }
+
+    /**
+     * Unregisters this query from its engine. It will no longer be kept up-to-date.
+     */
+    public void dispose() {
+        engine.queries.remove(this);
+        engine.observers.queries.remove(this);
+    }
+}
@@ -0,0 +1,76 @@
+package util.ecs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes a query before compiling it, see {@link Engine#query()}.
+ * Terms are iterated in the order they were added, required ones first, then optional ones.
+ */
+public final class QueryBuilder {
+    private final Engine engine;
+    private final List<Class<?>> required, optional;
+    private final Signature without;
+
+    QueryBuilder(Engine engine) {
+        this.engine = engine;
+        this.required = new ArrayList<>();
+        this.optional = new ArrayList<>();
+        this.without = new Signature();
+    }
+
+    /**
+     * Matched entities must have components (or tags) of all the given classes, which become terms of the query.
+     *
+     * @return this builder for chaining
+     */
+    public QueryBuilder with(Class<?>... types) {
+        required.addAll(List.of(types));
+        return this;
+    }
+
+    /**
+     * Matched entities must have no component (or tag) of the given classes.
+     *
+     * @return this builder for chaining
+     */
+    public QueryBuilder without(Class<?>... types) {
+        for (Class<?> type : types) {
+            without.set(ComponentRegistry.id(type));
+        }
+        return this;
+    }
+
+    /**
+     * Adds terms that do not affect matching: iteration passes null for entities lacking them.
+     *
+     * @return this builder for chaining
+     */
+    public QueryBuilder optional(Class<?>... types) {
+        optional.addAll(List.of(types));
+        return this;
+    }
+
+    /**
+     * Compiles the description into masks and per-archetype column offsets, and registers the query with the engine.
+     *
+     * @return a query kept up-to-date until {@link Query#dispose()}
+     */
+    public Query build() {
+        int[] ids = new int[required.size() + optional.size()];
+        Signature with = new Signature();
+        for (int t = 0; t < ids.length; t++) {
+            Class<?> type = t < required.size() ? required.get(t) : optional.get(t - required.size());
+            ids[t] = ComponentRegistry.id(type);
+            if (t < required.size()) {
+                with.set(ids[t]);
+            } else if (ComponentRegistry.isTag(ids[t]) || ComponentRegistry.isPacked(ids[t])) {
+                throw new RuntimeException("Tags and packed components cannot be optional!");
+            }
+        }
+        if (with.intersects(without)) {
+            throw new RuntimeException("Query requires and excludes the same class!");
+        }
+        return engine.register(new Query(engine, ids, with, new Signature(without)));
+    }
+}
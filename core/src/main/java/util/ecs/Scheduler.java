@@ -0,0 +1,318 @@
+package util.ecs;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Runs the systems of an engine as a dependency graph.
+ * Two systems are ordered if one was declared before/after the other, or if their declared component access conflicts
+ * (in insertion order, unless the before/after constraints already order them the other way). Systems without an ordering between them run concurrently on the engine's pool, except those
+ * pinned to the main thread, which run on the thread calling {@link Engine#run(float)}.
+ */
+public final class Scheduler {
+    /**
+     * Systems in insertion order
+     */
+    final List<SystemNode> nodes;
+
+    /**
+     * Whether the graph has to be rebuilt before the next run
+     */
+    boolean dirty;
+
+    /**
+     * Nodes in topological order
+     */
+    private SystemNode[] order;
+
+    /**
+     * Main-thread systems whose dependencies finished. Only touched by the main thread.
+     */
+    private final ArrayDeque<SystemNode> mainReady;
+
+    /**
+     * Systems that finished on a worker thread
+     */
+    private final LinkedBlockingQueue<SystemNode> finished;
+
+    /**
+     * Start of the current (or last) run
+     */
+    private long frameStart;
+
+    /**
+     * Duration of the last run, in nanoseconds
+     */
+    private long frameTime;
+
+    /**
+     * Longest chain of dependent systems of the last run
+     */
+    private final List<SystemNode> criticalPath;
+    private long criticalPathTime;
+
+    // Longest path ending at each node, indexed like order
+    private long[] pathTime;
+    private int[] pathPrev;
+
+    Scheduler() {
+        nodes = new ArrayList<>();
+        dirty = true;
+        order = new SystemNode[0];
+        mainReady = new ArrayDeque<>();
+        finished = new LinkedBlockingQueue<>();
+        criticalPath = new ArrayList<>();
+    }
+
+    SystemNode add(System system) {
+        SystemNode node = new SystemNode(this, system);
+        nodes.add(node);
+        dirty = true;
+        return node;
+    }
+
+    /**
+     * Builds the dependency edges and the topological order.
+     *
+     * @throws RuntimeException if the before/after constraints form a cycle
+     */
+    private void build() {
+        for (SystemNode node : nodes) {
+            node.successors.clear();
+            node.predecessors = 0;
+        }
+        for (SystemNode node : nodes) {
+            for (SystemNode other : node.after) {
+                edge(other, node);
+            }
+            for (SystemNode other : node.before) {
+                edge(node, other);
+            }
+        }
+        // Conflicting systems run in insertion order, unless already ordered the other way
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int j = i + 1; j < nodes.size(); j++) {
+                SystemNode a = nodes.get(i), b = nodes.get(j);
+                if (a.conflicts(b)) {
+                    if (reaches(b, a)) edge(b, a);
+                    else edge(a, b);
+                }
+            }
+        }
+
+        // Kahn's algorithm
+        order = new SystemNode[nodes.size()];
+        int head = 0, tail = 0;
+        for (SystemNode node : nodes) {
+            node.pending = node.predecessors;
+            if (node.pending == 0) order[tail++] = node;
+        }
+        while (head < tail) {
+            for (SystemNode next : order[head++].successors) {
+                if (--next.pending == 0) order[tail++] = next;
+            }
+        }
+        if (tail != nodes.size()) {
+            throw new RuntimeException("Systems have cyclic before/after constraints!");
+        }
+        for (int i = 0; i < order.length; i++) {
+            order[i].index = i;
+        }
+        pathTime = new long[order.length];
+        pathPrev = new int[order.length];
+        dirty = false;
+    }
+
+    /**
+     * @return Whether a path of edges leads from one node to the other
+     */
+    private boolean reaches(SystemNode from, SystemNode to) {
+        ArrayDeque<SystemNode> stack = new ArrayDeque<>();
+        List<SystemNode> visited = new ArrayList<>();
+        stack.push(from);
+        while (!stack.isEmpty()) {
+            SystemNode node = stack.pop();
+            if (node == to) return true;
+            for (SystemNode next : node.successors) {
+                if (!visited.contains(next)) {
+                    visited.add(next);
+                    stack.push(next);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void edge(SystemNode from, SystemNode to) {
+        if (from.scheduler != this || to.scheduler != this) {
+            throw new RuntimeException("Systems ordered against a system of another engine!");
+        }
+        if (!from.successors.contains(to)) {
+            from.successors.add(to);
+            to.predecessors++;
+        }
+    }
+
+    /**
+     * Runs every system once, returning when all finished.
+     * Command buffers are applied before each exclusive system and once all systems finished.
+     */
+    void run(Engine engine, float delta) {
+        if (dirty) build();
+        frameStart = java.lang.System.nanoTime();
+        for (SystemNode node : order) {
+            node.pending = node.predecessors;
+            node.error = null;
+        }
+        int remaining = order.length, running = 0;
+        for (SystemNode node : order) {
+            if (node.pending == 0 && !dispatch(node, engine, delta)) running++;
+        }
+
+        Throwable error = null;
+        while (remaining > 0) {
+            SystemNode node = error == null ? mainReady.poll() : null;
+            if (node != null) {
+                // Nothing else runs next to an exclusive system: apply the structural changes recorded so far
+                if (!node.declared) engine.flush();
+                execute(node, engine, delta);
+            } else if (running > 0) {
+                try {
+                    node = finished.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+                running--;
+            } else {
+                // Only reachable after a failure: nothing left will start
+                break;
+            }
+            remaining--;
+            if (node.error != null && error == null) {
+                // Let running systems finish, but do not start new ones
+                error = node.error;
+            }
+            if (error != null) continue;
+            for (SystemNode next : node.successors) {
+                if (--next.pending == 0 && !dispatch(next, engine, delta)) running++;
+            }
+        }
+        mainReady.clear();
+        if (error == null) engine.flush();
+        frameTime = java.lang.System.nanoTime() - frameStart;
+        if (error != null) {
+            throw new RuntimeException("System failed during run", error);
+        }
+        computeCriticalPath();
+        if (engine.profiler != null) engine.profiler.endFrame(frameTime);
+    }
+
+    /**
+     * Hands a system whose dependencies finished to the thread that will run it.
+     *
+     * @return Whether the system will run on the main thread
+     */
+    private boolean dispatch(SystemNode node, Engine engine, float delta) {
+        node.readyAt = java.lang.System.nanoTime() - frameStart;
+        if (node.onMainThread()) {
+            mainReady.add(node);
+            return true;
+        }
+        engine.pool.execute(() -> {
+            execute(node, engine, delta);
+            finished.add(node);
+        });
+        return false;
+    }
+
+    private void execute(SystemNode node, Engine engine, float delta) {
+        Profiler profiler = engine.profiler;
+        long allocated = profiler == null ? 0 : profiler.begin();
+        node.startedAt = java.lang.System.nanoTime() - frameStart;
+        try {
+            node.system.run(engine, delta);
+        } catch (Throwable t) {
+            node.error = t;
+        }
+        node.finishedAt = java.lang.System.nanoTime() - frameStart;
+        if (profiler != null) profiler.end(node, allocated);
+    }
+
+    /**
+     * Finds the chain of dependent systems with the longest total run time in the last frame.
+     */
+    private void computeCriticalPath() {
+        criticalPath.clear();
+        criticalPathTime = 0;
+        if (order.length == 0) return;
+        for (int i = 0; i < order.length; i++) {
+            pathTime[i] = 0;
+            pathPrev[i] = -1;
+        }
+        int best = 0;
+        for (int i = 0; i < order.length; i++) {
+            pathTime[i] += order[i].getRunTime();
+            if (pathTime[i] > pathTime[best]) best = i;
+            for (SystemNode next : order[i].successors) {
+                if (pathTime[i] > pathTime[next.index]) {
+                    pathTime[next.index] = pathTime[i];
+                    pathPrev[next.index] = i;
+                }
+            }
+        }
+        criticalPathTime = pathTime[best];
+        for (int i = best; i >= 0; i = pathPrev[i]) {
+            criticalPath.add(order[i]);
+        }
+        Collections.reverse(criticalPath);
+    }
+
+    /**
+     * @return Systems in insertion order
+     */
+    public List<SystemNode> getSystems() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * @return Chain of dependent systems that bounded the last run. Its systems cannot overlap, so shortening it is
+     * the only way to shorten the frame.
+     */
+    public List<SystemNode> getCriticalPath() {
+        return Collections.unmodifiableList(criticalPath);
+    }
+
+    /**
+     * @return Summed run time of the critical path of the last run, in nanoseconds
+     */
+    public long getCriticalPathTime() {
+        return criticalPathTime;
+    }
+
+    /**
+     * @return Duration of the last run, in nanoseconds
+     */
+    public long getFrameTime() {
+        return frameTime;
+    }
+
+    /**
+     * @return Human-readable timings of the last run, one system per line (times in milliseconds). Systems on the
+     * critical path are marked with *.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("frame %.3f, critical path %.3f%n", frameTime / 1e6, criticalPathTime / 1e6));
+        for (SystemNode node : nodes) {
+            sb.append(String.format("%s %-24s run %.3f, dependency wait %.3f, queue wait %.3f%s%n",
+                    criticalPath.contains(node) ? "*" : " ", node.name,
+                    node.getRunTime() / 1e6, node.getDependencyWait() / 1e6, node.getQueueWait() / 1e6,
+                    node.onMainThread() ? " (main)" : ""));
+        }
+        return sb.toString();
+    }
+}
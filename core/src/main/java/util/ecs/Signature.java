@@ -0,0 +1,131 @@
+package util.ecs;
+
+import java.util.Arrays;
+
+/**
+ * Bit set of component type ids (see {@link ComponentRegistry}).
+ * Bit i is set iff the component class with id i is part of the signature.
+ */
+public final class Signature {
+    /**
+     * Bits of ids [64 * w, 64 * w + 63] are stored in words[w]
+     */
+    long[] words;
+
+    public Signature() {
+        words = new long[1];
+    }
+
+    public Signature(Signature other) {
+        words = other.words.clone();
+    }
+
+    /**
+     * Sets the bit of the given id
+     *
+     * @return this signature for chaining
+     */
+    public Signature set(int id) {
+        int w = id >>> 6;
+        if (w >= words.length) {
+            words = Arrays.copyOf(words, w + 1);
+        }
+        words[w] |= 1L << id;
+        return this;
+    }
+
+    /**
+     * Clears the bit of the given id
+     *
+     * @return this signature for chaining
+     */
+    public Signature clear(int id) {
+        int w = id >>> 6;
+        if (w < words.length) {
+            words[w] &= ~(1L << id);
+        }
+        return this;
+    }
+
+    /**
+     * @return Whether the bit of the given id is set
+     */
+    public boolean get(int id) {
+        int w = id >>> 6;
+        return w < words.length && (words[w] & (1L << id)) != 0;
+    }
+
+    /**
+     * @return Whether every bit set in other is also set in this signature
+     */
+    public boolean containsAll(Signature other) {
+        long[] o = other.words;
+        for (int w = 0; w < o.length; w++) {
+            long mine = w < words.length ? words[w] : 0;
+            if ((mine & o[w]) != o[w]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Whether this signature and other share at least one set bit
+     */
+    public boolean intersects(Signature other) {
+        int n = Math.min(words.length, other.words.length);
+        for (int w = 0; w < n; w++) {
+            if ((words[w] & other.words[w]) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Number of set bits
+     */
+    public int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @return Ids of all set bits in ascending order
+     */
+    public int[] ids() {
+        int[] ids = new int[cardinality()];
+        int i = 0;
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                ids[i++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        long[] a = words, b = ((Signature) o).words;
+        // Trailing zero words do not matter
+        int n = Math.max(a.length, b.length);
+        for (int w = 0; w < n; w++) {
+            long x = w < a.length ? a[w] : 0;
+            long y = w < b.length ? b[w] : 0;
+            if (x != y) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        long h = 0;
+        for (int w = 0; w < words.length; w++) {
+            h ^= words[w] * (w + 1) * 0x9E3779B97F4A7C15L;
+        }
+        return (int) (h ^ (h >>> 32));
+    }
+}
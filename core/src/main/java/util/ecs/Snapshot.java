@@ -0,0 +1,296 @@
+package util.ecs;
+
+import util.collections.Int2ObjectMap;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves and restores the entities of an engine in a compact binary layout, archetype by archetype.
+ * Components of classes registered with a {@link Codec} are encoded row after row, {@link Packed} columns are copied
+ * in bulk and tags take no space. Components of other classes are not saved.
+ * <p>
+ * Layout (little endian): magic, type table (name and kind of every saved class), then for every non-empty archetype
+ * its types (indices in the table), its number of entities and its columns.
+ */
+public final class Snapshot {
+    private static final int MAGIC = 0x45435331; // "ECS1"
+    private static final byte CODEC = 0, PACKED = 1, TAG = 2;
+
+    /**
+     * Codecs by component id
+     */
+    private final Int2ObjectMap<Codec<?>> codecs;
+
+    public Snapshot() {
+        codecs = new Int2ObjectMap<>();
+    }
+
+    /**
+     * Saves components of the given class with the codec.
+     *
+     * @return this snapshot for chaining
+     */
+    public <T> Snapshot register(Class<T> type, Codec<T> codec) {
+        codecs.put(ComponentRegistry.id(type), codec);
+        return this;
+    }
+
+    /**
+     * @return Number of bytes {@link #save(Engine, ByteBuffer)} writes for the current state of the engine
+     */
+    public int size(Engine engine) {
+        List<Class<?>> types = types(engine);
+        int size = 8;
+        for (Class<?> type : types) {
+            size += 3 + type.getName().getBytes(StandardCharsets.UTF_8).length;
+        }
+        size += 4;
+        for (Archetype a : engine.archetypeList) {
+            if (a.size == 0) continue;
+            int[] ids = saved(a);
+            size += 8 + 4 * ids.length;
+            for (int id : ids) {
+                size += a.size * bytesPerRow(id);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Writes the entities of the engine at the position of the buffer, which needs {@link #size(Engine)} bytes left.
+     */
+    public void save(Engine engine, ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        List<Class<?>> types = types(engine);
+        Map<Integer, Integer> index = new HashMap<>();
+        buffer.putInt(MAGIC);
+        buffer.putInt(types.size());
+        for (Class<?> type : types) {
+            int id = ComponentRegistry.id(type);
+            index.put(id, index.size());
+            byte[] name = type.getName().getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) name.length);
+            buffer.put(name);
+            buffer.put(ComponentRegistry.isTag(id) ? TAG : ComponentRegistry.isPacked(id) ? PACKED : CODEC);
+        }
+        int archetypes = 0;
+        for (Archetype a : engine.archetypeList) {
+            if (a.size > 0) archetypes++;
+        }
+        buffer.putInt(archetypes);
+        for (Archetype a : engine.archetypeList) {
+            if (a.size == 0) continue;
+            int[] ids = saved(a);
+            buffer.putInt(ids.length);
+            for (int id : ids) {
+                buffer.putInt(index.get(id));
+            }
+            buffer.putInt(a.size);
+            for (int id : ids) {
+                int c = a.column(id), p = a.packed(id);
+                if (c >= 0) {
+                    @SuppressWarnings("unchecked")
+                    Codec<Object> codec = (Codec<Object>) codecs.get(id);
+                    Object[] column = a.columns[c];
+                    for (int r = 0; r < a.size; r++) {
+                        codec.write(column[r], buffer);
+                    }
+                } else if (p >= 0) {
+                    for (float[] field : a.floats[p]) {
+                        buffer.asFloatBuffer().put(field, 0, a.size);
+                        buffer.position(buffer.position() + 4 * a.size);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves the entities of the engine into a memory-mapped file, replacing it.
+     */
+    public void save(Engine engine, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size(engine));
+            save(engine, buffer);
+            buffer.force();
+        }
+    }
+
+    /**
+     * Deletes every entity of the engine, then creates the entities read at the position of the buffer.
+     * Entities are restored archetype by archetype in bulk, so handles taken before the restore are stale.
+     * The whole snapshot is checked before the engine is touched; only a codec failing to decode leaves it partly
+     * restored.
+     *
+     * @throws RuntimeException if the buffer is not a snapshot or is truncated, or holds a class that is unknown, has
+     *                          no codec or changed kind
+     */
+    public void restore(Engine engine, ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer check = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        Class<?>[] types;
+        try {
+            types = types(check);
+            int archetypes = check.getInt();
+            if (archetypes < 0) {
+                throw new RuntimeException("Snapshot is corrupt!");
+            }
+            for (int i = 0; i < archetypes; i++) {
+                Class<?>[] classes = classes(check, types);
+                int count = check.getInt();
+                long bytes = 0;
+                for (Class<?> type : classes) {
+                    bytes += (long) count * bytesPerRow(ComponentRegistry.id(type));
+                }
+                if (count < 0 || bytes > check.remaining()) {
+                    throw new RuntimeException("Snapshot is truncated!");
+                }
+                check.position(check.position() + (int) bytes);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new RuntimeException("Snapshot is truncated!", e);
+        }
+
+        // Valid: skip the type table read above, then replace the entities
+        types(buffer);
+        engine.clear();
+        int archetypes = buffer.getInt();
+        for (int i = 0; i < archetypes; i++) {
+            Class<?>[] classes = classes(buffer, types);
+            int count = buffer.getInt();
+            engine.createEntities(count, engine.archetype(classes), chunk -> {
+                Archetype a = chunk.archetype;
+                for (Class<?> type : classes) {
+                    int id = ComponentRegistry.id(type), c = a.column(id), p = a.packed(id);
+                    if (c >= 0) {
+                        Codec<?> codec = codecs.get(id);
+                        Object[] column = a.columns[c];
+                        for (int r = chunk.from; r < chunk.to; r++) {
+                            column[r] = codec.read(buffer);
+                        }
+                    } else if (p >= 0) {
+                        for (float[] field : a.floats[p]) {
+                            buffer.asFloatBuffer().get(field, chunk.from, count);
+                            buffer.position(buffer.position() + 4 * count);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Reads the magic and the type table
+     *
+     * @return Class of every entry of the table
+     */
+    private Class<?>[] types(ByteBuffer buffer) {
+        if (buffer.getInt() != MAGIC) {
+            throw new RuntimeException("Buffer does not hold a snapshot!");
+        }
+        int n = buffer.getInt();
+        if (n < 0 || n > buffer.remaining() / 3) {
+            throw new RuntimeException("Snapshot is corrupt!");
+        }
+        Class<?>[] types = new Class<?>[n];
+        for (int t = 0; t < types.length; t++) {
+            byte[] name = new byte[Short.toUnsignedInt(buffer.getShort())];
+            buffer.get(name);
+            byte kind = buffer.get();
+            String className = new String(name, StandardCharsets.UTF_8);
+            try {
+                types[t] = Class.forName(className);
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException("Snapshot holds unknown class " + className + "!", e);
+            }
+            int id = ComponentRegistry.id(types[t]);
+            if (kind != (ComponentRegistry.isTag(id) ? TAG : ComponentRegistry.isPacked(id) ? PACKED : CODEC)) {
+                throw new RuntimeException("Snapshot stores " + className + " differently!");
+            }
+            if (kind == CODEC && !codecs.containsKey(id)) {
+                throw new RuntimeException("No codec registered for " + className + "!");
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Reads the types of an archetype
+     */
+    private static Class<?>[] classes(ByteBuffer buffer, Class<?>[] types) {
+        int n = buffer.getInt();
+        if (n < 0 || n > types.length) {
+            throw new RuntimeException("Snapshot is corrupt!");
+        }
+        Class<?>[] classes = new Class<?>[n];
+        for (int t = 0; t < classes.length; t++) {
+            int type = buffer.getInt();
+            if (type < 0 || type >= types.length) {
+                throw new RuntimeException("Snapshot is corrupt!");
+            }
+            classes[t] = types[type];
+        }
+        return classes;
+    }
+
+    /**
+     * Restores the entities saved in a file, see {@link #restore(Engine, ByteBuffer)}. The file is memory-mapped.
+     */
+    public void restore(Engine engine, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            restore(engine, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return Saved classes present in non-empty archetypes of the engine
+     */
+    private List<Class<?>> types(Engine engine) {
+        Signature all = new Signature();
+        for (Archetype a : engine.archetypeList) {
+            if (a.size == 0) continue;
+            for (int id : saved(a)) {
+                all.set(id);
+            }
+        }
+        List<Class<?>> types = new ArrayList<>();
+        for (int id : all.ids()) {
+            types.add(ComponentRegistry.type(id));
+        }
+        return types;
+    }
+
+    /**
+     * @return Ids of the types of the archetype that are saved
+     */
+    private int[] saved(Archetype a) {
+        int[] ids = a.signature.ids();
+        int n = 0;
+        for (int id : ids) {
+            if (ComponentRegistry.isTag(id) || ComponentRegistry.isPacked(id) || codecs.containsKey(id)) {
+                ids[n++] = id;
+            }
+        }
+        return Arrays.copyOf(ids, n);
+    }
+
+    private int bytesPerRow(int id) {
+        if (ComponentRegistry.isTag(id)) return 0;
+        if (ComponentRegistry.isPacked(id)) return 4 * ComponentRegistry.fields(id).length;
+        return codecs.get(id).size();
+    }
+}
@@ -0,0 +1,192 @@
+package util.ecs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A system attached to an engine, with the component access and ordering it declared.
+ * A system that declares no access is exclusive: it runs on the main thread and never overlaps any other system.
+ */
+public final class SystemNode {
+    final System system;
+
+    /**
+     * Scheduler this node belongs to, which rebuilds its graph when a node changes
+     */
+    final Scheduler scheduler;
+
+    String name;
+
+    /**
+     * Component types read and written by the system
+     */
+    final Signature reads, writes;
+
+    /**
+     * Whether the system declared its access. If not, it conflicts with every other system.
+     */
+    boolean declared;
+
+    /**
+     * Whether the system was pinned to the thread calling {@link Engine#run(float)} (e.g. it needs the GL context)
+     */
+    boolean mainThread;
+
+    /**
+     * Explicit ordering constraints
+     */
+    final List<SystemNode> after, before;
+
+    // Built by the scheduler
+    List<SystemNode> successors = new ArrayList<>();
+    int predecessors;
+    int pending;
+    /**
+     * Position in the topological order
+     */
+    int index;
+
+    // Timings of the last frame, in nanoseconds relative to the start of the frame
+    long readyAt, startedAt, finishedAt;
+    Throwable error;
+
+    /**
+     * Samples of the last runs, null until profiling is enabled
+     */
+    Profile profile;
+
+    SystemNode(Scheduler scheduler, System system) {
+        this.scheduler = scheduler;
+        this.system = system;
+        this.name = system.getClass().getSimpleName();
+        this.reads = new Signature();
+        this.writes = new Signature();
+        this.declared = false;
+        this.mainThread = false;
+        this.after = new ArrayList<>();
+        this.before = new ArrayList<>();
+    }
+
+    /**
+     * Declares component types the system only reads. Declaring access lets the system run off the main thread.
+     *
+     * @return this node for chaining
+     */
+    public SystemNode reads(Class<?>... types) {
+        for (Class<?> type : types) {
+            reads.set(ComponentRegistry.id(type));
+        }
+        return declare();
+    }
+
+    /**
+     * Declares component types the system writes (or adds/removes). Declaring access lets the system run off the main thread.
+     *
+     * @return this node for chaining
+     */
+    public SystemNode writes(Class<?>... types) {
+        for (Class<?> type : types) {
+            writes.set(ComponentRegistry.id(type));
+        }
+        return declare();
+    }
+
+    private SystemNode declare() {
+        declared = true;
+        scheduler.dirty = true;
+        return this;
+    }
+
+    /**
+     * Pins the system to the thread calling {@link Engine#run(float)}. Needed for anything touching the GL context.
+     *
+     * @return this node for chaining
+     */
+    public SystemNode mainThread() {
+        this.mainThread = true;
+        scheduler.dirty = true;
+        return this;
+    }
+
+    /**
+     * The system will only start once all the given systems finished.
+     *
+     * @return this node for chaining
+     */
+    public SystemNode after(SystemNode... systems) {
+        after.addAll(List.of(systems));
+        scheduler.dirty = true;
+        return this;
+    }
+
+    /**
+     * All the given systems will only start once this system finished.
+     *
+     * @return this node for chaining
+     */
+    public SystemNode before(SystemNode... systems) {
+        before.addAll(List.of(systems));
+        scheduler.dirty = true;
+        return this;
+    }
+
+    /**
+     * @param name Name used in scheduler reports
+     * @return this node for chaining
+     */
+    public SystemNode named(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public System getSystem() {
+        return system;
+    }
+
+    /**
+     * @return Whether the system has to run on the main thread
+     */
+    boolean onMainThread() {
+        return mainThread || !declared;
+    }
+
+    /**
+     * @return Whether this system and other may not run at the same time
+     */
+    boolean conflicts(SystemNode other) {
+        if (!declared || !other.declared) return true;
+        return writes.intersects(other.writes) || writes.intersects(other.reads) || reads.intersects(other.writes);
+    }
+
+    /**
+     * @return Time the system waited on its dependencies during the last run, in nanoseconds
+     */
+    public long getDependencyWait() {
+        return readyAt;
+    }
+
+    /**
+     * @return Time the system waited for a thread once its dependencies finished during the last run, in nanoseconds
+     */
+    public long getQueueWait() {
+        return startedAt - readyAt;
+    }
+
+    /**
+     * @return Time the system ran during the last run, in nanoseconds
+     */
+    public long getRunTime() {
+        return finishedAt - startedAt;
+    }
+
+    /**
+     * @return Samples of the last runs, null if profiling was never enabled, see {@link Engine#enableProfiling(int)}
+     */
+    public Profile getProfile() {
+        return profile;
+    }
+}
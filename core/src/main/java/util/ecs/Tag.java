@@ -0,0 +1,9 @@
+package util.ecs;
+
+/**
+ * Marker for tag components: a tag is only a bit in the signature of its entities, it takes no storage.
+ * Tag entities with {@link Entity#tag(Class)} and filter queries on tags with {@link QueryBuilder#with(Class[])} and
+ * {@link QueryBuilder#without(Class[])}, see {@link Engine#query()}.
+ */
+public interface Tag {
+}
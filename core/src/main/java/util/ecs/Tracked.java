@@ -0,0 +1,21 @@
+package util.ecs;
+
+/**
+ * Component stamping its own changes: once its class is tracked (see {@link Engine#track(Class)}), the engine tells it
+ * which entity holds it, so its setters can call {@link Entity#markChanged(Class)} and queries filtering on
+ * {@link Query#changed(Class[])} see mutations made in place. Bindings follow the add, set and remove events of the
+ * component, so they are updated at sync points. A component replaced through {@link Entity#set(Object)} is not told,
+ * and may still stamp changes on its former entity.
+ */
+public interface Tracked {
+    /**
+     * @param engine engine holding the entity
+     * @param entity handle of the entity now holding this component
+     */
+    void attached(Engine engine, long entity);
+
+    /**
+     * @param entity handle of the entity that no longer holds this component, ignore if bound to another one since
+     */
+    void detached(long entity);
+}
@@ -0,0 +1,204 @@
+package util.memory;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Off-heap array of fixed-layout elements of stride floats each, e.g. one model matrix per instance.
+ * Memory comes from {@link MemoryUtil}: it is not moved or scanned by the GC, and can be handed to OpenGL as is
+ * (see {@link util.opengl.attributes.ArenaAttribute}) instead of being copied out of a float[] first.
+ * Elements are packed: removal moves the last element into the hole. Must be {@link #close() closed}.
+ * <p>
+ * Writing distinct elements from different threads is fine, growing (allocate) is not.
+ */
+public class FloatArena implements AutoCloseable {
+    /**
+     * Floats per element
+     */
+    private final int stride;
+
+    /**
+     * View of the whole allocation, capacity * stride floats
+     */
+    private FloatBuffer buffer;
+    private long address;
+    private int capacity;
+    private int size;
+
+    /**
+     * @param stride   Floats per element
+     * @param capacity Initial number of elements
+     */
+    public FloatArena(int stride, int capacity) {
+        if (stride <= 0 || capacity <= 0) {
+            throw new RuntimeException("Arena stride and capacity must be positive!");
+        }
+        if ((long) stride * capacity > Integer.MAX_VALUE) {
+            throw new RuntimeException("Arena is too large!");
+        }
+        this.stride = stride;
+        this.capacity = capacity;
+        this.buffer = MemoryUtil.memAllocFloat(stride * capacity);
+        this.address = MemoryUtil.memAddress(buffer);
+        this.size = 0;
+    }
+
+    /**
+     * Appends count zeroed elements. Growing moves the memory: addresses and buffers taken before are invalid.
+     *
+     * @return Index of the first new element
+     * @throws RuntimeException if count is negative, or if the arena would exceed Integer.MAX_VALUE floats
+     */
+    public int allocate(int count) {
+        checkOpen();
+        if (count < 0) {
+            throw new RuntimeException("Cannot allocate a negative number of elements!");
+        }
+        long needed = (long) size + count;
+        if (needed > capacity) {
+            // Sizes in long: doubling, or stride times the element count, can overflow an int
+            long limit = Integer.MAX_VALUE / stride;
+            if (needed > limit) {
+                throw new RuntimeException("Arena is too large!");
+            }
+            int grown = (int) Math.min(limit, Math.max(needed, (long) capacity << 1));
+            buffer = MemoryUtil.memRealloc(buffer, stride * grown);
+            address = MemoryUtil.memAddress(buffer);
+            capacity = grown;
+        }
+        int first = size;
+        MemoryUtil.memSet(offset(first), 0, (long) count * stride * 4);
+        size += count;
+        return first;
+    }
+
+    /**
+     * @return Index of a new zeroed element, see {@link #allocate(int)}
+     */
+    public int allocate() {
+        return allocate(1);
+    }
+
+    /**
+     * Removes an element by moving the last one into its place.
+     *
+     * @return Previous index of the moved element (now at the removed index), -1 if the removed element was last
+     */
+    public int swapRemove(int element) {
+        checkBounds(element, 0);
+        int last = --size;
+        if (element == last) return -1;
+        MemoryUtil.memCopy(offset(last), offset(element), stride * 4L);
+        return last;
+    }
+
+    public float get(int element, int field) {
+        checkBounds(element, field);
+        return MemoryUtil.memGetFloat(offset(element) + field * 4L);
+    }
+
+    public void set(int element, int field, float value) {
+        checkBounds(element, field);
+        MemoryUtil.memPutFloat(offset(element) + field * 4L, value);
+    }
+
+    /**
+     * Copies length floats of src, starting at srcOffset, to the element starting at field (e.g. a matrix).
+     */
+    public void set(int element, int field, float[] src, int srcOffset, int length) {
+        checkRange(element, field, length);
+        buffer.put(element * stride + field, src, srcOffset, length);
+    }
+
+    /**
+     * Copies length floats of the element starting at field to dst, starting at dstOffset.
+     */
+    public void get(int element, int field, float[] dst, int dstOffset, int length) {
+        checkRange(element, field, length);
+        buffer.get(element * stride + field, dst, dstOffset, length);
+    }
+
+    /**
+     * @return Native address of the element, valid until the arena grows or closes
+     */
+    public long address(int element) {
+        checkBounds(element, 0);
+        return offset(element);
+    }
+
+    /**
+     * @return New view of the elements in use (size * stride floats), valid until the arena grows or closes.
+     * Its position and limit are its own: the arena keeps the whole allocation for later writes.
+     */
+    public FloatBuffer buffer() {
+        checkOpen();
+        return MemoryUtil.memFloatBuffer(address, size * stride);
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Number of elements that fit before the memory has to grow
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Forget all elements, keeping the memory
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Frees the memory. The arena is unusable afterwards.
+     */
+    @Override
+    public void close() {
+        if (buffer == null) return;
+        MemoryUtil.memFree(buffer);
+        buffer = null;
+        address = 0;
+        size = 0;
+        capacity = 0;
+    }
+
+    private long offset(int element) {
+        return address + (long) element * stride * 4;
+    }
+
+    /**
+     * Out of bounds native accesses crash the JVM, so every access is checked
+     */
+    private void checkBounds(int element, int field) {
+        checkOpen();
+        if (element < 0 || element >= size || field < 0 || field >= stride) {
+            throw new IndexOutOfBoundsException("Element " + element + ", field " + field + " outside of arena!");
+        }
+    }
+
+    /**
+     * Same as {@link #checkBounds(int, int)} for fields [field, field + length), possibly empty
+     */
+    private void checkRange(int element, int field, int length) {
+        checkOpen();
+        if (element < 0 || element >= size || field < 0 || length < 0 || (long) field + length > stride) {
+            throw new IndexOutOfBoundsException("Element " + element + ", fields " + field + " to " + ((long) field + length)
+                    + " outside of arena!");
+        }
+    }
+
+    private void checkOpen() {
+        if (buffer == null) {
+            throw new RuntimeException("Arena is closed!");
+        }
+    }
+}
@@ -7,6 +7,8 @@ import util.Vector3;
 import util.ecs.Identifiable;
 import util.opengl.TextureManager.Texture;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.lwjgl.opengl.GL43.*;
 
 public class Material {
@@ -24,12 +26,26 @@ public class Material {
 
     boolean dirty;
 
+    /**
+     * Small dense id, so packed data (e.g. render snapshots) can refer to the material by index
+     */
+    private final int id;
+    private static final AtomicInteger nextId = new AtomicInteger();
+
     /**
      * Create a new material
      */
     public Material() {
         this.texs = new UnorderedList<>();
         this.dirty = false;
+        this.id = nextId.getAndIncrement();
+    }
+
+    /**
+     * @return Id of this material, unique among materials and counting up from 0
+     */
+    public int getId() {
+        return id;
     }
 
     /**
@@ -97,8 +113,9 @@ public class Material {
      * @param value value to set as
      */
     public void setBool(String name, boolean value) {
-        if (!shader.uniforms.containsKey(name)) return;
-        glUniform1f(shader.uniforms.get(name), value ? 1 : 0);
+        int location = shader.uniforms.get(name);
+        if (location < 0) return;
+        glUniform1f(location, value ? 1 : 0);
     }
 
     /**
@@ -108,8 +125,9 @@ public class Material {
      * @param value value to set as
      */
     public void setInt(String name, int value) {
-        if (!shader.uniforms.containsKey(name)) return;
-        glUniform1i(shader.uniforms.get(name), value);
+        int location = shader.uniforms.get(name);
+        if (location < 0) return;
+        glUniform1i(location, value);
     }
 
     /**
@@ -119,8 +137,9 @@ public class Material {
      * @param value value to set as
      */
     public void setFloat(String name, float value) {
-        if (!shader.uniforms.containsKey(name)) return;
-        glUniform1f(shader.uniforms.get(name), value);
+        int location = shader.uniforms.get(name);
+        if (location < 0) return;
+        glUniform1f(location, value);
     }
 
     /**
@@ -130,8 +149,9 @@ public class Material {
      * @param mat  value to set as
      */
     public void setMat4(String name, Matrix4 mat) {
-        if (!shader.uniforms.containsKey(name)) return;
-        glUniformMatrix4fv(shader.uniforms.get(name), false, mat.val);
+        int location = shader.uniforms.get(name);
+        if (location < 0) return;
+        glUniformMatrix4fv(location, false, mat.val);
     }
 
     /**
@@ -141,8 +161,9 @@ public class Material {
      * @param vec  value to set as
      */
     public void setVec3f(String name, Vector3 vec) {
-        if (!shader.uniforms.containsKey(name)) return;
-        glUniform3f(shader.uniforms.get(name), vec.x, vec.y, vec.z);
+        int location = shader.uniforms.get(name);
+        if (location < 0) return;
+        glUniform3f(location, vec.x, vec.y, vec.z);
     }
 
     /**
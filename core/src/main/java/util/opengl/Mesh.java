@@ -1,12 +1,14 @@
 package util.opengl;
 
 import util.Matrix4;
+import util.opengl.attributes.ArenaAttribute;
 import util.opengl.attributes.AttributeType;
 import util.opengl.attributes.ByteAttribute;
 import util.opengl.attributes.FloatAttribute;
 import util.opengl.attributes.IntAttribute;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.lwjgl.opengl.GL43.*;
 
@@ -28,8 +30,22 @@ public class Mesh {
      */
     private Material mat;
 
+    /**
+     * Small dense id, so packed data (e.g. render snapshots) can refer to the mesh by index
+     */
+    private final int id;
+    private static final AtomicInteger nextId = new AtomicInteger();
+
     public Mesh() {
         VAO = glGenVertexArrays();
+        id = nextId.getAndIncrement();
+    }
+
+    /**
+     * @return Id of this mesh, unique among meshes and counting up from 0
+     */
+    public int getId() {
+        return id;
     }
 
     /**
@@ -104,7 +120,8 @@ public class Mesh {
         // Bind VBO if needed and only once
         boolean bind = false;
         for (Geometry.AttrInfo entry : geo.attributes) {
-            if (!entry.dirty) continue;
+            // Dynamic arenas are written by systems every frame
+            if (!entry.dirty && !(entry.attribute instanceof ArenaAttribute arena && arena.dynamic)) continue;
             if (!bind) {
                 glBindBuffer(GL_ARRAY_BUFFER, VBO);
                 bind = true;
@@ -116,6 +133,12 @@ public class Mesh {
     // Helper
     private void fillBuffer(Geometry.AttrInfo entry) {
         VertexAttribute attribute = entry.attribute;
+        if (attribute instanceof ArenaAttribute arena) {
+            // Straight from off-heap memory, no copy
+            glBufferSubData(GL_ARRAY_BUFFER, entry.offset, arena.upload());
+            entry.dirty = false;
+            return;
+        }
         switch (attribute.type) {
             case FLOAT, MAT4 -> {
                 FloatAttribute attr = (FloatAttribute) attribute;
@@ -135,11 +158,11 @@ public class Mesh {
     }
 
     private void putAttr(String name, int locOffset, int size, AttributeType type, boolean normalized, int stride, int pointer, boolean instanced) {
-        if (!mat.shader.attributes.containsKey(name)) {
+        int location = mat.shader.attributes.get(name);
+        if (location < 0) {
             System.err.printf("Material's current shader %s has no attribute of name %s!\n", mat.shaderName, name);
             return;
         }
-        int location = mat.shader.attributes.get(name);
         glEnableVertexAttribArray(location+locOffset);
         glVertexAttribPointer(
                 location + locOffset,
@@ -4,11 +4,11 @@ import org.lwjgl.PointerBuffer;
 import org.lwjgl.assimp.*;
 import util.Matrix4;
 import util.Vector3;
+import util.collections.IntArray;
 import util.opengl.TextureManager.Texture;
 import util.opengl.attributes.FloatAttribute;
 
 import java.nio.IntBuffer;
-import java.util.ArrayList;
 
 import static org.lwjgl.assimp.Assimp.*;
 
@@ -109,7 +109,8 @@ public class Model {
 
         // indices
         int numFaces = mesh.mNumFaces();
-        ArrayList<Integer> ind = new ArrayList<>(numFaces);
+        // Triangulated, so 3 indices per face
+        IntArray ind = new IntArray(numFaces * 3);
         AIFace.Buffer faces = mesh.mFaces();
         for (int i = 0; i < numFaces; i++) {
             AIFace face = faces.get(i);
@@ -128,7 +129,7 @@ public class Model {
         geometry.addAttribute("aNormal", new FloatAttribute(3, normals, false));
         geometry.addAttribute("aBiTangent", new FloatAttribute(3, biTangents, false));
         geometry.addAttribute("aTangent", new FloatAttribute(3, tangents, false));
-        geometry.setIndices(ind.stream().mapToInt(i -> i).toArray());
+        geometry.setIndices(ind.toArray());
 
         Material mat = new Material();
         var material = AIMaterial.create(scene.mMaterials().get(mesh.mMaterialIndex()));
@@ -2,6 +2,8 @@ package util.opengl;
 
 import org.lwjgl.system.MemoryStack;
 import util.GameEngine;
+import util.collections.IntArray;
+import util.collections.Object2IntMap;
 
 import java.nio.IntBuffer;
 import java.nio.file.Files;
@@ -22,13 +24,13 @@ public class ShaderProgram {
      */
     int ID;
     /**
-     * Map of uniform names to locations
+     * Map of uniform names to locations, -1 for names that are not active uniforms
      */
-    public Map<String, Integer> uniforms = new HashMap<>();
+    public Object2IntMap<String> uniforms = new Object2IntMap<>(-1);
     /**
-     * Map of attribute names to locations
+     * Map of attribute names to locations, -1 for names that are not active attributes
      */
-    public Map<String, Integer> attributes = new HashMap<>();
+    public Object2IntMap<String> attributes = new Object2IntMap<>(-1);
 
     private String name;
 
@@ -59,7 +61,7 @@ public class ShaderProgram {
         Path compPath = Paths.get(name + ".comp");
 
         // Attached shader ids
-        List<Integer> sIDS = new ArrayList<>();
+        IntArray sIDS = new IntArray();
 
         addShader a = (t, p) -> {
             Optional<Integer> sID = loadShader(t, p);
@@ -97,9 +99,9 @@ public class ShaderProgram {
             }
         }
 
-        for (Integer sID : sIDS) {
-            glDetachShader(ID, sID);
-            glDeleteShader(sID);
+        for (int i = 0; i < sIDS.size(); i++) {
+            glDetachShader(ID, sIDS.get(i));
+            glDeleteShader(sIDS.get(i));
         }
 
         buildUniforms();
@@ -1,11 +1,10 @@
 package util.opengl;
 
 import org.lwjgl.system.MemoryStack;
+import util.collections.Object2IntMap;
 
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects;
 
 import static org.lwjgl.opengl.GL11.*;
@@ -24,10 +23,11 @@ public class TextureManager {
     /**
      * Map of initialized textures to their OpenGL id
      */
-    Map<Texture, Integer> textureMap;
+    Object2IntMap<Texture> textureMap;
 
     public TextureManager() {
-        textureMap = new HashMap<>();
+        // OpenGL never names a texture 0
+        textureMap = new Object2IntMap<>(0);
     }
 
     /**
@@ -37,9 +37,11 @@ public class TextureManager {
      * @return OpenGL id
      */
     public int getTexture(Texture texture) {
-        if (textureMap.containsKey(texture)) return textureMap.get(texture);
-        int id = glGenTextures();
+        int id = textureMap.get(texture);
+        if (id != 0) return id;
+        id = glGenTextures();
         loadTex(id, texture);
+        textureMap.put(texture, id);
         return id;
     }
 
@@ -0,0 +1,46 @@
+package util.opengl.attributes;
+
+import util.memory.FloatArena;
+import util.opengl.VertexAttribute;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Float attribute whose data lives in a {@link FloatArena}: the mesh uploads straight from the arena's off-heap memory.
+ * One arena element per vertex (or per instance): a mat4 if the stride is 16, otherwise a vector of stride floats (1 to 4).
+ * The buffer space is reserved for maxElements; the arena must not hold more when uploaded.
+ */
+public class ArenaAttribute extends VertexAttribute {
+    public final FloatArena arena;
+
+    /**
+     * @param dynamic Re-upload the arena on every render, for data written by systems each frame. Otherwise, mark the
+     *                attribute dirty through {@link util.opengl.Geometry#getAttribute(String)} after writing.
+     */
+    public ArenaAttribute(FloatArena arena, int maxElements, boolean dynamic, boolean instanced) {
+        int stride = arena.getStride();
+        if (stride != 16 && (stride < 1 || stride > 4)) {
+            throw new RuntimeException("Arena stride must be 1 to 4 floats, or 16 for a mat4!");
+        }
+        this.arena = arena;
+        this.type = stride == 16 ? AttributeType.MAT4 : AttributeType.FLOAT;
+        this.size = stride == 16 ? 4 : stride;
+        this.normalized = false;
+        this.dynamic = dynamic;
+        this.instanced = instanced;
+        this.sizeof = maxElements * stride * 4;
+        this.count = instanced ? 0 : arena.size();
+    }
+
+    /**
+     * @return The elements to upload
+     * @throws RuntimeException if the arena outgrew the reserved space
+     */
+    public FloatBuffer upload() {
+        FloatBuffer data = arena.buffer();
+        if (data.remaining() * 4 > sizeof) {
+            throw new RuntimeException("Arena outgrew its attribute!");
+        }
+        return data;
+    }
+}
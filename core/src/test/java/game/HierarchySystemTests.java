@@ -0,0 +1,86 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+import game.components.Hierarchy;
+import game.components.Transform;
+import org.junit.jupiter.api.Test;
+import util.Matrix4;
+import util.Vector3;
+import util.ecs.Engine;
+import util.ecs.Entity;
+
+public class HierarchySystemTests {
+    private static Transform at(float x) {
+        return new Transform(new Vector3(x, 0, 0), new Vector3(), new Vector3(1, 1, 1));
+    }
+
+    @Test
+    void propagation() {
+        Engine engine = new Engine();
+        HierarchySystem hierarchy = new HierarchySystem(engine);
+        engine.addSystem(hierarchy);
+        Transform rootTransform = at(1);
+        Entity root = engine.createEntity(rootTransform, new Hierarchy());
+        Entity child = engine.createEntity(at(2), new Hierarchy());
+        Entity grandChild = engine.createEntity(at(3), new Hierarchy());
+        Entity other = engine.createEntity(at(10), new Hierarchy());
+        hierarchy.attach(grandChild, child);
+        hierarchy.attach(child, root);
+        assertThrows(RuntimeException.class, () -> hierarchy.attach(root, grandChild));
+
+        engine.run(0);
+        assertEquals(4, hierarchy.getRecomputed());
+        Matrix4 world = new Matrix4();
+        assertEquals(6f, hierarchy.getWorld(grandChild, world).val[Matrix4.M03], 0);
+        assertTrue(grandChild.getComponent(Hierarchy.class).getIndex() > child.getComponent(Hierarchy.class).getIndex());
+
+        engine.run(0);
+        assertEquals(0, hierarchy.getRecomputed());
+
+        // Only the moved subtree is recomputed
+        rootTransform.setPosition(new Vector3(5, 0, 0));
+        engine.run(0);
+        assertEquals(3, hierarchy.getRecomputed());
+        assertEquals(10f, hierarchy.getWorld(grandChild, world).val[Matrix4.M03], 0);
+        assertEquals(10f, hierarchy.getWorld(other, world).val[Matrix4.M03], 0);
+
+        hierarchy.detach(child);
+        engine.run(0);
+        assertEquals(5f, hierarchy.getWorld(grandChild, world).val[Matrix4.M03], 0);
+    }
+
+    @Test
+    void replacedTransform() {
+        Engine engine = new Engine();
+        HierarchySystem hierarchy = new HierarchySystem(engine);
+        engine.addSystem(hierarchy);
+        Entity root = engine.createEntity(at(1), new Hierarchy());
+        Entity child = engine.createEntity(at(2), new Hierarchy());
+        hierarchy.attach(child, root);
+        engine.run(0);
+
+        // Same nodes, so no re-layout: the new Transform must still be picked up, and edits to the old one ignored
+        Transform old = root.getComponent(Transform.class);
+        Transform replacement = at(4);
+        root.set(replacement);
+        engine.run(0);
+        Matrix4 world = new Matrix4();
+        assertEquals(6f, hierarchy.getWorld(child, world).val[Matrix4.M03], 0);
+        old.setPosition(new Vector3(100, 0, 0));
+        engine.run(0);
+        assertEquals(0, hierarchy.getRecomputed());
+        replacement.setPosition(new Vector3(7, 0, 0));
+        engine.run(0);
+        assertEquals(9f, hierarchy.getWorld(child, world).val[Matrix4.M03], 0);
+    }
+
+    @Test
+    void modelsMatch() {
+        Transform transform = new Transform(new Vector3(1, 2, 3), new Vector3(0.3f, -1.2f, 2.5f), new Vector3(2, 0.5f, 3));
+        float[] out = transform.getModel(new float[20], 4);
+        float[] cached = transform.getModel().val;
+        for (int i = 0; i < 16; i++) {
+            assertEquals(cached[i], out[4 + i], 1e-5f);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+import game.components.Camera;
+import game.components.Spotlight;
+import org.junit.jupiter.api.Test;
+import util.Vector3;
+import util.ecs.Engine;
+
+public class RenderPublisherTests {
+    @Test
+    void snapshots() {
+        Engine engine = new Engine();
+        Camera camera = new Camera(new Vector3(), new Vector3(), 0.1f, 100, 1, 1);
+        Spotlight light = new Spotlight(new Vector3(1, 2, 3), new Vector3(), 1, 50);
+        engine.createEntity(light);
+        RenderPublisher publisher = new RenderPublisher(engine, camera);
+        engine.addSystem(publisher).reads(Spotlight.class);
+        assertNull(publisher.acquire());
+
+        engine.run(0);
+        RenderSnapshot first = publisher.acquire();
+        assertEquals(0, first.getFrame());
+        assertEquals(1, first.getLightCount());
+        assertEquals(50, first.getLights()[7], 0);
+        assertThrows(RuntimeException.class, publisher::acquire);
+
+        // Published into the other buffer while the first is held
+        light.range = 20;
+        engine.run(0);
+        assertEquals(50, first.getLights()[7], 0);
+        publisher.release(first);
+        RenderSnapshot second = publisher.acquire();
+        assertNotSame(first, second);
+        assertEquals(1, second.getFrame());
+        assertEquals(20, second.getLights()[7], 0);
+        assertThrows(RuntimeException.class, () -> publisher.release(first));
+        publisher.release(second);
+    }
+
+    @Test
+    void heldTooLong() {
+        Engine engine = new Engine();
+        Camera camera = new Camera(new Vector3(), new Vector3(), 0.1f, 100, 1, 1);
+        RenderPublisher publisher = new RenderPublisher(engine, camera, 10);
+        engine.addSystem(publisher);
+        engine.run(0);
+        RenderSnapshot held = publisher.acquire();
+        engine.run(0);
+        // The next run must fill the held snapshot
+        assertThrows(RuntimeException.class, () -> engine.run(0));
+        publisher.release(held);
+    }
+}
@@ -0,0 +1,119 @@
+package game;
+
+import static org.junit.jupiter.api.Assertions.*;
+import game.components.Camera;
+import game.components.Transform;
+import org.junit.jupiter.api.Test;
+import util.Vector3;
+import util.ecs.Engine;
+import util.ecs.Entity;
+import util.ecs.Profile;
+import util.ecs.SystemNode;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public class SpatialGridTests {
+    private static Transform at(float x) {
+        return new Transform(new Vector3(x, 0, 0), new Vector3(), new Vector3(1, 1, 1));
+    }
+
+    @Test
+    void queries() {
+        Engine engine = new Engine();
+        SpatialGrid grid = new SpatialGrid(engine, 10, 1);
+        engine.addSystem(grid).reads(Transform.class);
+        Entity[] entities = new Entity[100];
+        for (int i = 0; i < 100; i++) {
+            entities[i] = engine.createEntity(at(i * 3));
+        }
+        engine.run(0);
+        assertEquals(100, grid.getCount());
+        assertEquals(100, grid.getMoved());
+
+        List<Entity> found = new ArrayList<>();
+        grid.forEachInBox(new Vector3(10, -1, -1), new Vector3(20, 1, 1), found::add);
+        // Centers 9 to 21 are within a radius of the box
+        assertEquals(5, found.size());
+        found.clear();
+        grid.forEachInSphere(new Vector3(150, 0, 0), 1.5f, found::add);
+        assertEquals(List.of(entities[50]), found);
+
+        // Only moved entities are re-binned
+        entities[50].getComponent(Transform.class).setPosition(new Vector3(0, 50, 0));
+        entities[51].getComponent(Transform.class).setPosition(new Vector3(153.5f, 0, 0));
+        engine.deleteEntity(entities[52]);
+        engine.run(0);
+        assertEquals(1, grid.getMoved());
+        assertEquals(99, grid.getCount());
+        found.clear();
+        grid.forEachInSphere(new Vector3(150, 0, 0), 3, found::add);
+        found.sort(Comparator.comparingLong(Entity::getHandle));
+        assertEquals(List.of(entities[49], entities[51]), found);
+
+        float[] nearest = {Float.MAX_VALUE};
+        Entity[] picked = new Entity[1];
+        grid.forEachOnRay(new Vector3(0, -100, 0), new Vector3(0, 1, 0), 1000, (entity, distance) -> {
+            if (distance < nearest[0]) {
+                nearest[0] = distance;
+                picked[0] = entity;
+            }
+        });
+        assertEquals(entities[0], picked[0]);
+        assertEquals(99, nearest[0], 1e-4);
+        // Short enough to walk the cells instead of scanning
+        found.clear();
+        grid.forEachOnRay(new Vector3(30, -10, 0), new Vector3(0, 2, 0), 20, (entity, distance) -> found.add(entity));
+        assertEquals(List.of(entities[10]), found);
+
+        // Looking along +x from the origin
+        Camera camera = new Camera(new Vector3(-1, 0, 0), new Vector3(), 0.1f, 100, 0.5f, 1);
+        int[] visible = {0};
+        grid.forEachInFrustum(camera.getViewProj(), e -> visible[0]++);
+        // Entities 0 to 33 are within a radius of the far plane, 50 moved out of view
+        assertEquals(34, visible[0]);
+    }
+
+    @Test
+    void incremental() {
+        Engine engine = new Engine();
+        Entity[] entities = new Entity[100];
+        for (int i = 0; i < 100; i++) entities[i] = engine.createEntity(at(i * 3));
+        // Transforms created before the grid are tracked too
+        SpatialGrid grid = new SpatialGrid(engine, 10, 1);
+        SystemNode node = engine.addSystem(grid).reads(Transform.class);
+        engine.run(0);
+        assertEquals(100, grid.getMoved());
+
+        engine.enableProfiling(1);
+        engine.run(0);
+        assertEquals(0, node.getProfile().last(Profile.Metric.ENTITIES));
+        entities[10].getComponent(Transform.class).setPosition(new Vector3(0, 50, 0));
+        entities[20].getComponent(Transform.class).setScale(new Vector3(2, 2, 2));
+        engine.run(0);
+        // Only the changed transforms are visited
+        assertEquals(2, node.getProfile().last(Profile.Metric.ENTITIES));
+        assertEquals(1, grid.getMoved());
+        List<Entity> found = new ArrayList<>();
+        grid.forEachInSphere(new Vector3(0, 50, 0), 1, found::add);
+        assertEquals(List.of(entities[10]), found);
+    }
+
+    @Test
+    void replacedTransform() {
+        Engine engine = new Engine();
+        SpatialGrid grid = new SpatialGrid(engine, 10, 1);
+        engine.addSystem(grid).reads(Transform.class);
+        Entity entity = engine.createEntity(at(0));
+        engine.run(0);
+
+        // Same version as the replaced Transform, still re-binned
+        entity.set(at(100));
+        engine.run(0);
+        assertEquals(1, grid.getMoved());
+        List<Entity> found = new ArrayList<>();
+        grid.forEachInSphere(new Vector3(100, 0, 0), 1, found::add);
+        assertEquals(List.of(entity), found);
+    }
+}
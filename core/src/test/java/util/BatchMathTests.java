@@ -0,0 +1,115 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class BatchMathTests {
+    private final java.util.Random random = new java.util.Random(7);
+
+    private float[] randoms(int length, float range) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) values[i] = (random.nextFloat() * 2 - 1) * range;
+        return values;
+    }
+
+    @Test
+    void loading() {
+        boolean module = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        // Only the vectorTest task runs with the module
+        assertEquals(Boolean.getBoolean("batchmath.vectorTest"), module);
+        if (!module) {
+            assertNull(BatchMath.VECTOR);
+            assertFalse(BatchMath.isVectorized());
+        } else {
+            // Unless the CPU has less than 4 lanes
+            assertEquals(BatchMath.VECTOR != null, BatchMath.isVectorized());
+        }
+    }
+
+    @Test
+    void kernels() {
+        // Compares the SIMD kernels against the scalar ones when loaded, see loading()
+        BatchMath.Kernels scalar = BatchMath.SCALAR;
+        BatchMath.Kernels vector = BatchMath.VECTOR == null ? scalar : BatchMath.VECTOR;
+
+        for (int count = 0; count < 20; count++) {
+            float[] m = randoms(16, 2), mats = randoms(count * 16 + 3, 2), points = randoms(count * 3 + 1, 10);
+            float[] expected = new float[count * 16], actual = new float[count * 16];
+
+            // Same as Matrix4.mul, exactly the same across kernels
+            scalar.mul(m, mats, 3, expected, 0, count);
+            vector.mul(m, mats, 3, actual, 0, count);
+            assertArrayEquals(expected, actual);
+            for (int i = 0; i < count; i++) {
+                float[] ref = m.clone();
+                Matrix4.mul(ref, java.util.Arrays.copyOfRange(mats, 3 + i * 16, 19 + i * 16));
+                assertArrayEquals(ref, java.util.Arrays.copyOfRange(actual, i * 16, i * 16 + 16), 1e-4f);
+            }
+            vector.mul(m, mats, 3, mats, 3, count);
+            assertArrayEquals(expected, java.util.Arrays.copyOfRange(mats, 3, 3 + count * 16));
+
+            expected = new float[count * 3];
+            actual = new float[count * 3];
+            scalar.transformPoints(m, points, 1, expected, 0, count);
+            vector.transformPoints(m, points, 1, actual, 0, count);
+            assertArrayEquals(expected, actual);
+            for (int i = 0; i < count; i++) {
+                float[] ref = java.util.Arrays.copyOfRange(points, 1 + i * 3, 4 + i * 3);
+                Matrix4.mulVec(m, ref);
+                assertArrayEquals(ref, java.util.Arrays.copyOfRange(actual, i * 3, i * 3 + 3));
+            }
+            vector.transformPoints(m, points, 1, points, 1, count);
+            assertArrayEquals(expected, java.util.Arrays.copyOfRange(points, 1, 1 + count * 3));
+        }
+    }
+
+    @Test
+    void cullSpheres() {
+        // Unit cube: normals point inwards
+        float[] planes = {1, 0, 0, 1, -1, 0, 0, 1, 0, 1, 0, 1, 0, -1, 0, 1, 0, 0, 1, 1, 0, 0, -1, 1};
+        float[] twice = java.util.Arrays.copyOf(planes, 48);
+        System.arraycopy(planes, 0, twice, 24, 24);
+        for (int count = 0; count < 40; count++) {
+            float[] spheres = randoms(count * 4 + 2, 2);
+            for (int i = 0; i < count; i++) spheres[2 + i * 4 + 3] = Math.abs(spheres[2 + i * 4 + 3]) / 2;
+            int[] expected = new int[count], actual = new int[count];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                int s = 2 + i * 4;
+                float r = spheres[s + 3];
+                if (Math.abs(spheres[s]) <= 1 + r && Math.abs(spheres[s + 1]) <= 1 + r && Math.abs(spheres[s + 2]) <= 1 + r) {
+                    expected[n++] = i;
+                }
+            }
+            assertEquals(n, BatchMath.SCALAR.cullSpheres(planes, 6, spheres, 2, count, actual));
+            assertArrayEquals(java.util.Arrays.copyOf(expected, n), java.util.Arrays.copyOf(actual, n));
+            assertEquals(n, BatchMath.cullSpheres(planes, 6, spheres, 2, count, actual));
+            assertArrayEquals(java.util.Arrays.copyOf(expected, n), java.util.Arrays.copyOf(actual, n));
+            // Repeated planes, so the SIMD kernels take more than one pass whatever their width
+            assertEquals(n, BatchMath.cullSpheres(twice, 12, spheres, 2, count, actual));
+            assertArrayEquals(java.util.Arrays.copyOf(expected, n), java.util.Arrays.copyOf(actual, n));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> BatchMath.cullSpheres(planes, 6, new float[7], 0, 2, new int[2]));
+    }
+
+    @Test
+    void compose() {
+        int rows = 37;
+        float[][] columns = new float[26][rows];
+        for (int c = 1; c < 10; c++) columns[c] = randoms(rows, 4);
+        BatchMath.compose(columns, 1, 10, 2, rows);
+
+        Matrix4 ref = new Matrix4();
+        for (int r = 2; r < rows; r++) {
+            ref.idt()
+                    .translate(columns[1][r], columns[2][r], columns[3][r])
+                    .rotate(columns[4][r], columns[5][r], columns[6][r])
+                    .scale(columns[7][r], columns[8][r], columns[9][r]);
+            for (int i = 0; i < 16; i++) {
+                assertEquals(ref.val[i], columns[10 + i][r], 1e-4f);
+            }
+        }
+        // Rows outside the range are untouched
+        assertEquals(0, columns[25][1]);
+    }
+}
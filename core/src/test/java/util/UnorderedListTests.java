@@ -18,6 +18,11 @@ class Stub extends Identifiable {
         Stub stub = (Stub) o;
         return a == stub.a;
     }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(a);
+    }
 }
 
 public class UnorderedListTests {
@@ -82,4 +87,98 @@ public class UnorderedListTests {
         }
         assertFalse(list.contains(s1));
     }
+
+    @Test
+    void nestedIter() {
+        UnorderedList<Stub> list = new UnorderedList<>();
+        for (int i = 0; i < 10; i++) list.add(new Stub(i));
+        int pairs = 0;
+        for (Stub a : list) {
+            for (Stub b : list) {
+                pairs++;
+            }
+        }
+        assertEquals(100, pairs);
+
+        UnorderedList<Stub>.Cursor outer = list.cursor(), inner = list.cursor();
+        int sum = 0;
+        while (outer.hasNext()) {
+            Stub a = outer.next();
+            inner.reset();
+            while (inner.hasNext()) sum += a.a * inner.next().a;
+        }
+        assertEquals(45 * 45, sum);
+
+        int[] indexed = {0};
+        list.forEachIndexed((i, stub) -> indexed[0] += i == list.indexOf(stub) ? 1 : 0);
+        assertEquals(10, indexed[0]);
+    }
+
+    @Test
+    void iterRemoveVisitsAll() {
+        UnorderedList<Stub> list = new UnorderedList<>();
+        for (int i = 0; i < 10; i++) list.add(new Stub(i % 2));
+        var iter = list.iterator();
+        int visited = 0;
+        while (iter.hasNext()) {
+            visited++;
+            if (iter.next().a == 0) iter.remove();
+        }
+        assertEquals(10, visited);
+        assertEquals(5, list.size());
+        assertTrue(list.stream().allMatch(s -> s.a == 1));
+    }
+
+    @Test
+    void iterRemoveOncePerNext() {
+        UnorderedList<Stub> list = new UnorderedList<>();
+        for (int i = 0; i < 3; i++) list.add(new Stub(i));
+        var iter = list.cursor();
+        assertThrows(IllegalStateException.class, iter::remove);
+        iter.next();
+        iter.next();
+        iter.remove();
+        assertThrows(IllegalStateException.class, iter::remove);
+        assertEquals(2, list.size());
+        iter.reset();
+        assertThrows(IllegalStateException.class, iter::remove);
+    }
+
+    @Test
+    void parallelStream() {
+        UnorderedList<Stub> list = new UnorderedList<>();
+        for (int i = 0; i < 10000; i++) list.add(new Stub(i));
+        var spliterator = list.spliterator();
+        assertTrue(spliterator.hasCharacteristics(java.util.Spliterator.SIZED | java.util.Spliterator.SUBSIZED));
+        var half = spliterator.trySplit();
+        assertEquals(5000, half.estimateSize());
+        assertEquals(5000, spliterator.estimateSize());
+        assertEquals(10000L * 9999 / 2, list.parallelStream().mapToLong(s -> s.a).sum());
+    }
+
+    @Test
+    void idsAfterChurn() {
+        UnorderedList<Stub> list = new UnorderedList<>();
+        java.util.List<Stub> present = new java.util.ArrayList<>();
+        java.util.Random random = new java.util.Random(7);
+        for (int i = 0; i < 1000; i++) {
+            if (!present.isEmpty() && random.nextBoolean()) {
+                Stub s = present.remove(random.nextInt(present.size()));
+                assertTrue(list.remove(s));
+                assertFalse(list.contains(s));
+            } else if (!present.isEmpty() && random.nextInt(4) == 0) {
+                Stub s = list.remove(random.nextInt(list.size()));
+                present.remove(s);
+            } else {
+                Stub s = new Stub(i);
+                list.add(random.nextInt(list.size() + 1), s);
+                present.add(s);
+            }
+            assertEquals(present.size(), list.size());
+            for (Stub s : present) {
+                assertTrue(list.contains(s));
+                assertSame(s, list.get(s.getId()));
+            }
+        }
+    }
 }
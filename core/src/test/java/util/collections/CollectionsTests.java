@@ -0,0 +1,132 @@
+package util.collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class CollectionsTests {
+    @Test
+    void arrays() {
+        IntArray ints = new IntArray(2);
+        for (int i = 0; i < 100; i++) ints.add(i);
+        ints.addAll(100, 101);
+        assertEquals(102, ints.size());
+        assertEquals(0, ints.removeIndex(0));
+        assertEquals(101, ints.get(0));
+        ints.set(1, -1);
+        assertArrayEquals(new int[]{101, -1, 2}, java.util.Arrays.copyOf(ints.toArray(), 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> ints.get(101));
+        ints.clear();
+        assertTrue(ints.isEmpty());
+    }
+
+    @Test
+    void object2IntMap() {
+        Object2IntMap<String> map = new Object2IntMap<>(-1);
+        Map<String, Integer> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            String key = "k" + random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.containsKey(key) ? expected.remove(key) : -1, map.remove(key));
+            } else {
+                assertEquals(expected.containsKey(key) ? expected.get(key) : -1, map.put(key, i));
+                expected.put(key, i);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int i = 0; i < 500; i++) {
+            String key = "k" + i;
+            assertEquals(expected.getOrDefault(key, -1), map.get(key));
+        }
+        int[] sum = {0};
+        map.forEach((key, value) -> sum[0] += value);
+        assertEquals(expected.values().stream().mapToInt(v -> v).sum(), sum[0]);
+        assertThrows(NullPointerException.class, () -> map.put(null, 0));
+        map.clear();
+        assertEquals(-1, map.get("k1"));
+    }
+
+    @Test
+    void int2ObjectMap() {
+        Int2ObjectMap<String> map = new Int2ObjectMap<>();
+        Map<Integer, String> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            // Negative keys and keys colliding in the low bits
+            int key = (random.nextInt(500) - 250) << 4;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int key = -250 << 4; key < 250 << 4; key += 16) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+        int[] count = {0};
+        map.forEach((key, value) -> {
+            assertEquals(expected.get(key), value);
+            count[0]++;
+        });
+        assertEquals(expected.size(), count[0]);
+    }
+
+    @Test
+    void sparseSet() {
+        SparseSet<String> set = new SparseSet<>();
+        Map<Integer, String> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            int id = random.nextInt(300);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id), set.remove(id));
+            } else {
+                assertEquals(expected.put(id, "v" + i), set.put(id, "v" + i));
+            }
+            assertEquals(expected.size(), set.size());
+        }
+        for (int id = 0; id < 300; id++) {
+            assertEquals(expected.get(id), set.get(id));
+            assertEquals(expected.containsKey(id), set.contains(id));
+            if (set.contains(id)) assertEquals(id, set.idAt(set.slotOf(id)));
+        }
+        assertFalse(set.contains(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> set.put(-1, "x"));
+
+        // Bulk removal keeps the order of what is left
+        int before = set.size();
+        int odd = set.removeIf(v -> Integer.parseInt(v.substring(1)) % 2 == 1);
+        expected.values().removeIf(v -> Integer.parseInt(v.substring(1)) % 2 == 1);
+        assertEquals(before - expected.size(), odd);
+        assertEquals(expected.size(), set.size());
+        expected.forEach((id, v) -> assertEquals(v, set.get(id)));
+
+        SparseSet<Object> small = new SparseSet<>();
+        for (int id = 0; id < 100; id++) small.put(id, id);
+        set.retainAll(small);
+        expected.keySet().removeIf(id -> id >= 100);
+        assertEquals(expected.size(), set.size());
+        expected.forEach((id, v) -> assertEquals(v, set.get(id)));
+
+        // Sorting reorders slots without breaking lookup, equal keys keep their order
+        SparseSet<int[]> keyed = new SparseSet<>();
+        for (int id = 0; id < 50; id++) keyed.put(id * 7 % 50, new int[]{id % 5 - 2, id});
+        keyed.sort(v -> v[0]);
+        for (int slot = 1; slot < keyed.size(); slot++) {
+            int[] a = keyed.valueAt(slot - 1), b = keyed.valueAt(slot);
+            assertTrue(a[0] < b[0] || a[0] == b[0] && a[1] < b[1]);
+        }
+        for (int id = 0; id < 50; id++) {
+            assertEquals(id, keyed.idAt(keyed.slotOf(id)));
+            assertEquals(id, keyed.get(id)[1] * 7 % 50);
+        }
+        keyed.clear();
+        assertFalse(keyed.contains(0));
+        assertEquals(0, keyed.size());
+    }
+}
@@ -0,0 +1,652 @@
+package util.ecs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class Position {
+    float x;
+
+    Position(float x) {
+        this.x = x;
+    }
+}
+
+class Velocity {
+    float dx;
+
+    Velocity(float dx) {
+        this.dx = dx;
+    }
+}
+
+class Health {
+    int hp;
+
+    Health(int hp) {
+        this.hp = hp;
+    }
+}
+
+@Packed.Layout({"vx", "x"})
+class Body implements Packed {
+    float x, vx;
+
+    Body() {
+    }
+
+    Body(float x, float vx) {
+        this.x = x;
+        this.vx = vx;
+    }
+}
+
+class Hidden implements Tag {
+}
+
+class Unlaid implements Packed {
+    float a;
+}
+
+@Packed.Layout({"a", "a"})
+class Misdeclared implements Packed {
+    float a, b;
+}
+
+public class EngineTests {
+    @Test
+    void createShareArchetype() {
+        Engine engine = new Engine();
+        Entity e1 = engine.createEntity(new Position(1), new Velocity(2));
+        Entity e2 = engine.createEntity(new Velocity(3), new Position(4));
+        assertSame(e1.archetype, e2.archetype);
+        assertEquals(2, e1.archetype.size());
+        assertEquals(4f, e2.getComponent(Position.class).x, 0);
+        assertThrows(RuntimeException.class, () -> engine.createEntity(new Position(1), new Position(2)));
+    }
+
+    @Test
+    void addRemoveMoves() {
+        Engine engine = new Engine();
+        Entity e1 = engine.createEntity(new Position(1));
+        Entity e2 = engine.createEntity(new Position(2));
+        Archetype start = e1.archetype;
+
+        Velocity v = new Velocity(5);
+        e1.add(v);
+        assertNotSame(start, e1.archetype);
+        assertEquals(1, start.size());
+        assertTrue(e1.contains(v));
+        assertEquals(1f, e1.getComponent(Position.class).x, 0);
+        // e2 was swapped into e1's old row
+        assertEquals(2f, e2.getComponent(Position.class).x, 0);
+
+        assertSame(v, e1.removeType(Velocity.class));
+        assertSame(start, e1.archetype);
+        assertNull(e1.getComponent(Velocity.class));
+        assertNull(e1.removeType(Velocity.class));
+        assertThrows(RuntimeException.class, () -> e1.add(new Position(3)));
+    }
+
+    @Test
+    void findMatchingArchetypes() {
+        Engine engine = new Engine();
+        for (int i = 0; i < 10; i++) {
+            engine.createEntity(new Position(i));
+            engine.createEntity(new Position(i), new Velocity(i));
+            engine.createEntity(new Position(i), new Velocity(i), new Health(i));
+        }
+        assertEquals(30, engine.findEntitiesWith(Position.class).count());
+        assertEquals(20, engine.findEntitiesWith(Position.class, Velocity.class).count());
+        assertEquals(10, engine.findEntitiesWith(Position.class, Velocity.class, Health.class).count());
+        engine.findEntitiesWith(Velocity.class, Health.class).forEach(r -> {
+            assertSame(r.components.comp1, r.entity.getComponent(Velocity.class));
+            assertSame(r.components.comp2, r.entity.getComponent(Health.class));
+        });
+        // No objects to return
+        assertThrows(IllegalArgumentException.class, () -> engine.findEntitiesWith(Hidden.class));
+        assertThrows(IllegalArgumentException.class, () -> engine.findEntitiesWith(Position.class, Body.class));
+        assertThrows(IllegalArgumentException.class, () -> engine.findEntitiesWith(Position.class, Velocity.class, Hidden.class));
+    }
+
+    @Test
+    void deleteDisable() {
+        Engine engine = new Engine();
+        Entity e1 = engine.createEntity(new Position(1));
+        Entity e2 = engine.createEntity(new Position(2));
+        engine.disableEntity(e1);
+        assertEquals(1, engine.findEntitiesWith(Position.class).count());
+        engine.enableEntity(e1);
+        assertTrue(engine.deleteEntity(e2));
+        assertFalse(engine.deleteEntity(e2));
+        assertEquals(1, engine.findEntitiesWith(Position.class).count());
+    }
+
+    @Test
+    void handlesDetectStaleEntities() {
+        Engine engine = new Engine();
+        Entity e1 = engine.createEntity(new Position(1));
+        long handle = e1.getHandle();
+        assertSame(e1, engine.getEntity(handle));
+        assertTrue(engine.deleteEntity(handle));
+        assertFalse(engine.isAlive(handle));
+        assertNull(engine.getEntity(handle));
+
+        // Slot and entity object are recycled, the old handle stays stale
+        Entity e2 = engine.createEntity(new Velocity(2));
+        assertSame(e1, e2);
+        assertNotEquals(handle, e2.getHandle());
+        assertNull(engine.getEntity(handle));
+        assertFalse(engine.deleteEntity(handle));
+        assertSame(e2, engine.getEntity(e2.getHandle()));
+        assertEquals(1, engine.getEntityCount());
+
+        // Commands recorded before a delete do not leak into the next occupant
+        engine.commands().add(e2, new Health(3));
+        engine.deleteEntity(e2);
+        Entity e3 = engine.createEntity(new Position(3));
+        engine.flush();
+        assertNull(e3.getComponent(Health.class));
+    }
+
+    @Test
+    void signatureBits() {
+        Signature a = new Signature().set(3).set(70);
+        Signature b = new Signature().set(70);
+        assertTrue(a.containsAll(b));
+        assertFalse(b.containsAll(a));
+        assertTrue(a.intersects(b));
+        assertArrayEquals(new int[]{3, 70}, a.ids());
+        assertEquals(new Signature().set(3), a.clear(70));
+        assertEquals(new Signature().set(3).hashCode(), a.hashCode());
+
+        Engine engine = new Engine();
+        Entity e = engine.createEntity(new Position(1), new Health(1));
+        assertEquals(ComponentRegistry.signature(Health.class, Position.class), e.getSignature());
+    }
+
+    @Test
+    void queryTracksChanges() {
+        Engine engine = new Engine();
+        Query query = engine.query(Position.class, Velocity.class);
+        assertEquals(0, query.size());
+
+        Entity e1 = engine.createEntity(new Position(1), new Velocity(1));
+        Entity e2 = engine.createEntity(new Position(2));
+        engine.createEntity(new Health(3));
+        assertEquals(1, query.size());
+        assertTrue(query.contains(e1));
+
+        e2.add(new Velocity(2));
+        assertEquals(2, query.size());
+        engine.disableEntity(e2);
+        engine.disableEntity(e2);
+        assertEquals(1, query.size());
+        assertFalse(e2.isEnabled());
+        engine.enableEntity(e2);
+        assertTrue(query.contains(e2));
+        e1.removeType(Velocity.class);
+        assertFalse(query.contains(e1));
+        engine.deleteEntity(e2);
+        assertEquals(0, query.size());
+
+        int[] count = {0};
+        engine.createEntity(new Velocity(3), new Position(3), new Health(3));
+        query.forEachEntity(e -> count[0]++);
+        assertEquals(1, count[0]);
+    }
+
+    @Test
+    void forEachNested() {
+        Engine engine = new Engine();
+        for (int i = 0; i < 5; i++) {
+            engine.createEntity(new Position(i), new Velocity(1), new Health(10));
+        }
+        Query moving = engine.query(Position.class, Velocity.class, Health.class);
+        Query all = engine.query(Position.class);
+        moving.forEach((Position p, Velocity v) -> p.x += v.dx);
+        int[] pairs = {0};
+        moving.forEach((Position p, Velocity v, Health h) -> all.forEach((Position other) -> pairs[0]++));
+        assertEquals(25, pairs[0]);
+        float[] sum = {0};
+        all.forEach((Position p) -> sum[0] += p.x);
+        assertEquals(15f, sum[0], 0);
+        assertThrows(RuntimeException.class, () -> all.forEach((Position p, Velocity v) -> {
+        }));
+    }
+
+    @Test
+    void parallelForEachChunks() {
+        Engine engine = new Engine();
+        for (int i = 0; i < 1000; i++) {
+            engine.createEntity(new Position(i), new Velocity(1));
+            if (i % 3 == 0) engine.createEntity(new Position(i), new Velocity(1), new Health(1));
+        }
+        Query query = engine.query(Position.class, Velocity.class).setChunkSize(64).setParallelThreshold(0);
+        query.parallelForEach((Position p, Velocity v) -> v.dx += 1);
+        int[] count = {0};
+        query.forEach((Position p, Velocity v) -> {
+            assertEquals(2f, v.dx, 0);
+            count[0]++;
+        });
+        assertEquals(1334, count[0]);
+
+        // Sequential fallback
+        query.setParallelThreshold(Integer.MAX_VALUE).parallelForEach((Position p, Velocity v) -> v.dx += 1);
+        query.forEach((Position p, Velocity v) -> assertEquals(3f, v.dx, 0));
+    }
+
+    @Test
+    void schedulerOrdering() {
+        Engine engine = new Engine();
+        java.util.List<String> log = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        Thread main = Thread.currentThread();
+        SystemNode write = engine.addSystem((e, d) -> log.add("write")).writes(Position.class).named("write");
+        SystemNode read = engine.addSystem((e, d) -> log.add("read")).reads(Position.class).named("read");
+        SystemNode other = engine.addSystem((e, d) -> log.add("other")).writes(Health.class);
+        SystemNode gl = engine.addSystem((e, d) -> {
+            assertSame(main, Thread.currentThread());
+            log.add("gl");
+        });
+        SystemNode first = engine.addSystem((e, d) -> log.add("first")).reads(Velocity.class).before(write, other);
+
+        engine.run(0);
+        assertEquals(5, log.size());
+        assertEquals("first", log.get(0));
+        assertTrue(log.indexOf("write") < log.indexOf("read"));
+        // Exclusive systems run after everything added before them
+        assertEquals(4, log.indexOf("gl"));
+        var path = engine.getScheduler().getCriticalPath();
+        assertSame(first, path.get(0));
+        assertSame(gl, path.get(path.size() - 1));
+
+        first.after(write);
+        assertThrows(RuntimeException.class, () -> engine.run(0));
+    }
+
+    @Test
+    void commandBuffersApplyAtSync() {
+        Engine engine = new Engine();
+        Query query = engine.query(Position.class, Velocity.class);
+        for (int i = 0; i < 1000; i++) {
+            engine.createEntity(new Position(i));
+        }
+        Query positions = engine.query(Position.class);
+        positions.setParallelThreshold(1).setChunkSize(100);
+        // Structural changes recorded from worker threads while iterating
+        positions.parallelForEach((Position p) -> {
+            CommandBuffer commands = engine.commands();
+            commands.createEntity(new Velocity(p.x));
+        });
+        Entity first = positions.archetypes.get(0).entities[0];
+        CommandBuffer commands = engine.commands();
+        commands.add(first, new Velocity(1));
+        commands.remove(first, Velocity.class);
+        commands.add(first, new Velocity(2));
+        Entity pending = commands.createEntity(new Position(-1));
+        commands.add(pending, new Health(3));
+        commands.deleteEntity(commands.createEntity(new Position(-2)));
+        assertFalse(pending.isAlive());
+        assertEquals(0, query.size());
+
+        engine.flush();
+        assertEquals(1, query.size());
+        assertEquals(2f, first.getComponent(Velocity.class).dx, 0);
+        assertTrue(pending.isAlive());
+        assertEquals(3, pending.getComponent(Health.class).hp);
+        assertEquals(1001, positions.size());
+        assertEquals(1001, engine.query(Velocity.class).size());
+        assertEquals(2001, engine.getEntityCount());
+        for (CommandBuffer buffer : engine.buffers) {
+            assertEquals(0, buffer.size());
+        }
+
+        commands.add(first, new Velocity(3));
+        assertThrows(RuntimeException.class, engine::flush);
+        assertEquals(0, commands.size());
+
+        // Applied at the end of a run
+        commands.deleteEntity(first);
+        engine.run(0);
+        assertFalse(first.isAlive());
+        assertEquals(0, query.size());
+
+        // Buffers of finished threads are applied, then dropped
+        Thread worker = new Thread(() -> engine.commands().createEntity(new Position(-3)));
+        worker.start();
+        assertDoesNotThrow(() -> worker.join());
+        int buffers = engine.buffers.size();
+        engine.flush();
+        assertEquals(1001, positions.size());
+        assertEquals(buffers - 1, engine.buffers.size());
+    }
+
+    @Test
+    void changeDetection() {
+        Engine engine = new Engine();
+        Entity e1 = engine.createEntity(new Position(1), new Velocity(1));
+        Entity e2 = engine.createEntity(new Position(2), new Velocity(2));
+        Query changed = engine.query(Position.class).changed(Position.class);
+        Query added = engine.query(Position.class, Health.class).added(Health.class);
+        Query movement = engine.query(Position.class, Velocity.class).writes(Position.class);
+        java.util.List<Float> seen = new java.util.ArrayList<>();
+
+        changed.forEach((Position p) -> seen.add(p.x));
+        assertEquals(2, seen.size());
+        seen.clear();
+        changed.forEach((Position p) -> seen.add(p.x));
+        assertEquals(0, seen.size());
+
+        e2.getComponent(Position.class).x = 3;
+        e2.markChanged(Position.class);
+        changed.forEach((Position p) -> seen.add(p.x));
+        assertEquals(java.util.List.of(3f), seen);
+        seen.clear();
+
+        // Moving to another archetype keeps the ticks of carried components
+        e1.add(new Health(1));
+        changed.forEach((Position p) -> seen.add(p.x));
+        assertEquals(0, seen.size());
+        added.forEach((Position p) -> seen.add(p.x));
+        assertEquals(java.util.List.of(1f), seen);
+        seen.clear();
+        added.forEach((Position p) -> seen.add(p.x));
+        assertEquals(0, seen.size());
+
+        movement.forEach((Position p, Velocity v) -> p.x += v.dx);
+        changed.forEach((Position p) -> seen.add(p.x));
+        assertEquals(2, seen.size());
+        seen.clear();
+
+        e1.set(new Position(5));
+        changed.parallelForEach((Position p) -> {
+            synchronized (seen) {
+                seen.add(p.x);
+            }
+        });
+        assertEquals(java.util.List.of(5f), seen);
+        assertThrows(RuntimeException.class, () -> changed.changed(Health.class));
+    }
+
+    @Test
+    void packedColumns() {
+        Engine engine = new Engine();
+        for (int i = 0; i < 100; i++) {
+            engine.createEntity(new Body(i, 1), new Health(i));
+        }
+        Entity moved = engine.createEntity(new Body(-1, 2));
+        moved.add(new Position(0));
+        Query bodies = engine.query(Body.class).setParallelThreshold(1).setChunkSize(16);
+        int x = ComponentRegistry.field(Body.class, "x"), vx = ComponentRegistry.field(Body.class, "vx");
+        // Columns follow the layout, not the declaration order
+        assertEquals(1, x);
+        assertEquals(0, vx);
+        assertThrows(RuntimeException.class, () -> ComponentRegistry.id(Unlaid.class));
+        assertThrows(RuntimeException.class, () -> ComponentRegistry.id(Misdeclared.class));
+        bodies.parallelForEachChunk(chunk -> {
+            float[][] f = chunk.floats(Body.class);
+            for (int r = chunk.from(); r < chunk.to(); r++) {
+                f[x][r] += f[vx][r];
+            }
+        });
+        assertEquals(1f, moved.getComponent(Body.class).x, 0);
+        float[] sum = new float[1];
+        bodies.forEachChunk(chunk -> {
+            float[][] f = chunk.floats(Body.class);
+            for (int r = chunk.from(); r < chunk.to(); r++) sum[0] += f[x][r];
+        });
+        assertEquals(100 * 99 / 2 + 100 + 1, sum[0], 0);
+        bodies.forEachChunk(chunk -> assertThrows(RuntimeException.class, () -> chunk.term(0)));
+
+        moved.set(new Body(7, 0));
+        moved.removeType(Position.class);
+        assertEquals(7f, moved.getComponent(Body.class).x, 0);
+        assertThrows(RuntimeException.class, () -> moved.add(new Body()));
+        assertThrows(RuntimeException.class, () -> bodies.forEach((Body b) -> {
+        }));
+    }
+
+    @Test
+    void packedTransformMatchesTransform() {
+        Engine engine = new Engine();
+        util.Vector3 position = new util.Vector3(1, 2, 3), rotation = new util.Vector3(0.3f, -1.2f, 2f), scale = new util.Vector3(2, 1, 0.5f);
+        engine.createEntity(new game.components.PackedTransform(position, rotation, scale));
+        util.Matrix4 expected = new game.components.Transform(position, rotation, scale).getModel();
+        util.Matrix4 actual = new util.Matrix4();
+        engine.query(game.components.PackedTransform.class).forEachChunk(chunk -> {
+            game.components.PackedTransform.updateModels(chunk);
+            game.components.PackedTransform.getModel(chunk, chunk.from(), actual);
+        });
+        assertArrayEquals(expected.val, actual.val, 1e-5f);
+    }
+
+    @Test
+    void tagsAreSignatureBits() {
+        Engine engine = new Engine();
+        Entity e1 = engine.createEntity(new Position(1));
+        Entity e2 = engine.createEntity(new Position(2));
+        Query visible = engine.query().with(Position.class).without(Hidden.class).build();
+        Query hidden = engine.query(Position.class, Hidden.class);
+
+        e2.tag(Hidden.class);
+        assertTrue(e2.hasTag(Hidden.class));
+        assertEquals(1, e2.archetype.typeIds.length);
+        assertEquals(2f, e2.getComponent(Position.class).x, 0);
+        assertEquals(1, visible.size());
+        assertEquals(1, hidden.size());
+        java.util.List<Float> seen = new java.util.ArrayList<>();
+        hidden.forEach((Position p) -> seen.add(p.x));
+        assertEquals(java.util.List.of(2f), seen);
+
+        e2.untag(Hidden.class).untag(Hidden.class);
+        assertFalse(e2.hasTag(Hidden.class));
+        assertEquals(2, visible.size());
+
+        engine.commands().tag(e1, Hidden.class);
+        engine.flush();
+        assertEquals(1, hidden.size());
+        assertThrows(RuntimeException.class, () -> engine.query(Hidden.class).forEach((Object o) -> {
+        }));
+    }
+
+    @Test
+    void queryBuilder() {
+        Engine engine = new Engine();
+        engine.createEntity(new Position(1), new Velocity(1), new Health(1));
+        engine.createEntity(new Position(2), new Velocity(2));
+        engine.createEntity(new Position(3), new Velocity(3)).tag(Hidden.class);
+        engine.createEntity(new Position(4));
+        Query query = engine.query()
+                .with(Position.class, Velocity.class)
+                .without(Hidden.class)
+                .optional(Health.class)
+                .build();
+        assertEquals(2, query.size());
+        java.util.Map<Float, Integer> seen = new java.util.HashMap<>();
+        query.forEach((Position p, Velocity v, Health h) -> seen.put(p.x, h == null ? null : h.hp));
+        assertEquals(2, seen.size());
+        assertEquals(1, seen.get(1f));
+        assertNull(seen.get(2f));
+
+        // Any number of terms through chunks
+        int[] count = new int[1];
+        query.forEachChunk(chunk -> {
+            for (int r = chunk.from(); r < chunk.to(); r++) {
+                assertSame(chunk.objects(Position.class)[r], chunk.term(0)[r]);
+                if (chunk.term(2)[r] != null) count[0]++;
+            }
+        });
+        assertEquals(1, count[0]);
+        assertThrows(RuntimeException.class, () -> engine.query().with(Position.class).without(Position.class).build());
+        assertThrows(RuntimeException.class, () -> engine.query().optional(Hidden.class).build());
+    }
+
+    @Test
+    void bulkCreate() {
+        Engine engine = new Engine();
+        engine.createEntity(new Position(-1), new Velocity(0));
+        Query query = engine.query(Position.class, Velocity.class);
+        Archetype archetype = engine.archetype(Position.class, Velocity.class, Body.class);
+        engine.createEntities(100_000, archetype, chunk -> {
+            Object[] positions = chunk.objects(Position.class), velocities = chunk.objects(Velocity.class);
+            float[] x = chunk.floats(Body.class)[ComponentRegistry.field(Body.class, "x")];
+            for (int r = chunk.from(); r < chunk.to(); r++) {
+                positions[r] = new Position(r);
+                velocities[r] = new Velocity(1);
+                x[r] = r;
+            }
+        });
+        assertEquals(100_001, query.size());
+        assertEquals(100_001, engine.getEntityCount());
+        Entity last = archetype.entities[archetype.size() - 1];
+        assertEquals(99_999f, last.getComponent(Position.class).x, 0);
+        assertEquals(99_999f, last.getComponent(Body.class).x, 0);
+        assertSame(last, engine.getEntity(last.getHandle()));
+        assertTrue(engine.deleteEntity(last));
+        assertEquals(100_000, query.size());
+
+        // Nothing is created from a foreign archetype, or when a component is left null
+        assertThrows(RuntimeException.class, () -> engine.createEntities(1, new Engine().archetype(Position.class), chunk -> {
+        }));
+        assertThrows(RuntimeException.class, () -> engine.createEntities(10, archetype, chunk -> {
+            Object[] positions = chunk.objects(Position.class);
+            for (int r = chunk.from(); r < chunk.to(); r++) positions[r] = new Position(r);
+        }));
+        assertEquals(100_000, query.size());
+        assertEquals(100_000, engine.getEntityCount());
+    }
+
+    @Test
+    void observersBatchedAtSync() {
+        Engine engine = new Engine();
+        java.util.List<String> log = new java.util.ArrayList<>();
+        engine.onAdd(Velocity.class, (e, v) -> log.add("add " + v.dx));
+        engine.onRemove(Velocity.class, (e, v) -> log.add("remove " + v.dx));
+        engine.onSet(Velocity.class, (e, v) -> log.add("set " + v.dx));
+        engine.query(Position.class, Velocity.class)
+                .onEnter(e -> log.add("enter " + engine.getEntity(e).getComponent(Position.class).x))
+                .onExit(e -> log.add("exit"));
+
+        Entity e1 = engine.createEntity(new Position(1), new Velocity(1));
+        Entity e2 = engine.createEntity(new Position(2));
+        e2.add(new Velocity(2));
+        e1.set(new Velocity(3));
+        assertTrue(log.isEmpty());
+        engine.flush();
+        // Added components are read at delivery
+        assertEquals(java.util.List.of("add 3.0", "enter 1.0", "add 2.0", "enter 2.0", "set 3.0"), log);
+        log.clear();
+
+        e1.setEnabled(false);
+        e2.removeType(Velocity.class);
+        engine.commands().deleteEntity(e1);
+        engine.run(0);
+        assertEquals(java.util.List.of("exit", "remove 2.0", "exit", "remove 3.0"), log);
+    }
+
+    @Test
+    void snapshotRoundTrip(@TempDir java.nio.file.Path dir) throws java.io.IOException {
+        Engine engine = new Engine();
+        engine.createEntities(1000, engine.archetype(Position.class, Body.class, game.components.Transform.class), chunk -> {
+            Object[] positions = chunk.objects(Position.class), transforms = chunk.objects(game.components.Transform.class);
+            float[] x = chunk.floats(Body.class)[ComponentRegistry.field(Body.class, "x")];
+            for (int r = chunk.from(); r < chunk.to(); r++) {
+                positions[r] = new Position(r);
+                transforms[r] = new game.components.Transform(new util.Vector3(r, 1, 2), new util.Vector3(), new util.Vector3(1, 1, 1));
+                x[r] = -r;
+            }
+        });
+        engine.createEntity(new Position(-1), new Velocity(5)).tag(Hidden.class);
+        Snapshot snapshot = game.components.Codecs.snapshot().register(Position.class, new Codec<>() {
+            public int size() {
+                return 4;
+            }
+
+            public void write(Position p, java.nio.ByteBuffer buffer) {
+                buffer.putFloat(p.x);
+            }
+
+            public Position read(java.nio.ByteBuffer buffer) {
+                return new Position(buffer.getFloat());
+            }
+        });
+        java.nio.ByteBuffer buffer = java.nio.ByteBuffer.allocateDirect(snapshot.size(engine));
+        snapshot.save(engine, buffer);
+        assertFalse(buffer.hasRemaining());
+
+        engine.createEntity(new Position(42));
+        buffer.flip();
+        snapshot.restore(engine, buffer);
+        assertEquals(1001, engine.getEntityCount());
+        Query query = engine.query(Position.class, game.components.Transform.class);
+        float[] sums = new float[2];
+        query.forEach((Position p, game.components.Transform t) -> {
+            sums[0] += p.x;
+            sums[1] += t.getPosition().x;
+        });
+        assertEquals(999 * 1000 / 2f, sums[0], 0);
+        assertEquals(999 * 1000 / 2f, sums[1], 0);
+        assertEquals(-999f, engine.archetype(Position.class, Body.class, game.components.Transform.class).entities[999].getComponent(Body.class).x, 0);
+        // Velocity has no codec, the tag survives
+        assertEquals(1, engine.query().with(Position.class, Hidden.class).build().size());
+        assertEquals(0, engine.query(Velocity.class).size());
+
+        java.nio.file.Path file = dir.resolve("world.bin");
+        snapshot.save(engine, file);
+        Engine other = new Engine();
+        snapshot.restore(other, file);
+        assertEquals(1001, other.getEntityCount());
+        assertThrows(RuntimeException.class, () -> new Snapshot().restore(new Engine(), file));
+
+        // A truncated snapshot is rejected before the live world is cleared
+        buffer.flip();
+        java.nio.ByteBuffer truncated = buffer.duplicate().limit(buffer.limit() - 1);
+        assertThrows(RuntimeException.class, () -> snapshot.restore(other, truncated));
+        assertEquals(1001, other.getEntityCount());
+    }
+
+    @Test
+    void profiling() {
+        Engine engine = new Engine();
+        for (int i = 0; i < 10; i++) engine.createEntity(new Position(i));
+        Entity marked = engine.createEntity(new Position(10)).tag(Hidden.class);
+        Query query = engine.query().with(Position.class).without(Hidden.class).build();
+        java.util.List<float[]> garbage = new java.util.ArrayList<>();
+        SystemNode node = engine.addSystem((e, delta) -> {
+            query.forEach((Position p) -> p.x++);
+            query.parallelForEach((Position p) -> p.x++);
+            garbage.add(new float[1024]);
+        }).reads(Position.class).named("mover");
+        Query moved = engine.query(Position.class).changed(Position.class);
+        SystemNode watcher = engine.addSystem((e, delta) -> moved.forEach((Position p) -> {
+        })).reads(Position.class);
+        assertNull(node.getProfile());
+
+        Profiler profiler = engine.enableProfiling(4);
+        for (int i = 0; i < 6; i++) {
+            marked.markChanged(Position.class);
+            engine.run(0);
+        }
+        Profile profile = node.getProfile();
+        assertEquals(4, profile.getSamples());
+        assertEquals(20, profile.last(Profile.Metric.ENTITIES));
+        assertEquals(20, profile.p99(Profile.Metric.ENTITIES));
+        assertTrue(profile.min(Profile.Metric.TIME) > 0);
+        assertTrue(profile.min(Profile.Metric.TIME) <= profile.avg(Profile.Metric.TIME));
+        assertTrue(profile.avg(Profile.Metric.TIME) <= profile.max(Profile.Metric.TIME));
+        if (profiler.isAllocationSupported()) {
+            assertTrue(profile.min(Profile.Metric.ALLOCATED) >= 4096);
+        }
+        assertEquals(4, profiler.getFrame().getSamples());
+        assertEquals(11, profiler.getFrame().last(Profile.Metric.ENTITIES));
+        // Only the rows passing the change filter are counted
+        assertEquals(1, watcher.getProfile().last(Profile.Metric.ENTITIES));
+        assertTrue(profiler.report().contains("mover"));
+
+        engine.disableProfiling();
+        engine.run(0);
+        assertEquals(4, profile.getSamples());
+        assertNull(engine.getProfiler());
+    }
+}
@@ -0,0 +1,70 @@
+package util.memory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class FloatArenaTests {
+    @Test
+    void arena() {
+        try (FloatArena arena = new FloatArena(4, 2)) {
+            for (int i = 0; i < 10; i++) {
+                int e = arena.allocate();
+                assertEquals(i, e);
+                arena.set(e, 0, new float[]{i, i + 0.5f, i + 0.25f}, 0, 3);
+                arena.set(e, 3, -i);
+            }
+            assertEquals(10, arena.size());
+            assertTrue(arena.getCapacity() >= 10);
+
+            // Last element moves into the hole
+            assertEquals(9, arena.swapRemove(2));
+            assertEquals(9, arena.get(2, 0));
+            assertEquals(-9, arena.get(2, 3));
+            assertEquals(-1, arena.swapRemove(8));
+            assertEquals(8, arena.size());
+
+            // The buffer views the same memory
+            java.nio.FloatBuffer buffer = arena.buffer();
+            assertEquals(32, buffer.remaining());
+            assertEquals(9.5f, buffer.get(9));
+            arena.set(2, 1, 42);
+            assertEquals(42, buffer.get(9));
+
+            float[] out = new float[4];
+            arena.get(2, 0, out, 0, 4);
+            assertArrayEquals(new float[]{9, 42, 9.25f, -9}, out);
+            assertThrows(IndexOutOfBoundsException.class, () -> arena.get(8, 0));
+            assertThrows(IndexOutOfBoundsException.class, () -> arena.set(0, 4, 1));
+            assertThrows(IndexOutOfBoundsException.class, () -> arena.set(0, 2, out, 0, 4));
+            assertThrows(IndexOutOfBoundsException.class, () -> arena.set(0, 0, out, 0, -1));
+            // Empty copies are fine, even at the end of an element
+            arena.set(2, 4, out, 0, 0);
+            arena.get(2, 0, out, 0, 0);
+
+            // New elements are zeroed, even over old data
+            arena.clear();
+            int e = arena.allocate(2);
+            assertEquals(0, e);
+            assertEquals(0, arena.get(1, 2));
+            assertThrows(RuntimeException.class, () -> arena.allocate(-1));
+            assertThrows(RuntimeException.class, () -> arena.allocate(Integer.MAX_VALUE));
+            assertEquals(2, arena.size());
+        }
+
+        // Views taken for an upload do not limit later writes within capacity
+        try (FloatArena arena = new FloatArena(4, 8)) {
+            arena.allocate();
+            assertEquals(4, arena.buffer().remaining());
+            int e = arena.allocate();
+            arena.set(e, 0, new float[]{1, 2, 3, 4}, 0, 4);
+            float[] out = new float[4];
+            arena.get(e, 0, out, 0, 4);
+            assertArrayEquals(new float[]{1, 2, 3, 4}, out);
+            assertEquals(8, arena.buffer().remaining());
+        }
+
+        FloatArena closed = new FloatArena(1, 1);
+        closed.close();
+        assertThrows(RuntimeException.class, closed::allocate);
+    }
+}
@@ -0,0 +1,134 @@
+package util;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * SIMD {@link BatchMath} kernels on the Vector API. Only loaded by {@link BatchMath} when the jdk.incubator.vector
+ * module is present: no other class may refer to it. Built in its own source set, the only one compiled with the module.
+ * <p>
+ * Matrices are processed a column at a time on 4 lanes, transform columns as many rows at a time as the preferred
+ * species holds. Operations are done in the same order as {@link BatchMath.Scalar} so results match exactly, except
+ * for sines and cosines.
+ */
+final class VectorKernels implements BatchMath.Kernels {
+    private static final VectorSpecies<Float> S4 = FloatVector.SPECIES_128;
+    private static final VectorSpecies<Float> S = FloatVector.SPECIES_PREFERRED;
+
+    /**
+     * Planes of {@link #cullSpheres} transposed to a, b, c and d lanes. Per thread, as kernels are shared, and only
+     * grown, so culling allocates nothing once warm.
+     */
+    private final ThreadLocal<float[][]> transposed = ThreadLocal.withInitial(() -> new float[4][0]);
+
+    VectorKernels() {
+    }
+
+    /**
+     * @return Whether the CPU has at least 4 float lanes, checked by {@link BatchMath} before loading these kernels
+     */
+    static boolean isSupported() {
+        return S.length() >= 4;
+    }
+
+    @Override
+    public void mul(float[] m, float[] mats, int offset, float[] out, int outOffset, int count) {
+        FloatVector c0 = FloatVector.fromArray(S4, m, 0), c1 = FloatVector.fromArray(S4, m, 4);
+        FloatVector c2 = FloatVector.fromArray(S4, m, 8), c3 = FloatVector.fromArray(S4, m, 12);
+        for (int i = 0; i < count; i++) {
+            int b = offset + (i << 4), o = outOffset + (i << 4);
+            for (int col = 0; col < 16; col += 4) {
+                // Read the column before writing it, for in place multiplication
+                float b0 = mats[b + col], b1 = mats[b + col + 1], b2 = mats[b + col + 2], b3 = mats[b + col + 3];
+                c0.mul(b0).add(c1.mul(b1)).add(c2.mul(b2)).add(c3.mul(b3)).intoArray(out, o + col);
+            }
+        }
+    }
+
+    @Override
+    public void compose(float[][] f, int trs, int model, int from, int to) {
+        int r = from;
+        FloatVector zero = FloatVector.zero(S), one = FloatVector.broadcast(S, 1);
+        for (int bound = from + S.loopBound(to - from); r < bound; r += S.length()) {
+            FloatVector rx = FloatVector.fromArray(S, f[trs + 3], r);
+            FloatVector ry = FloatVector.fromArray(S, f[trs + 4], r);
+            FloatVector rz = FloatVector.fromArray(S, f[trs + 5], r);
+            FloatVector sX = rx.lanewise(VectorOperators.SIN), cX = rx.lanewise(VectorOperators.COS);
+            FloatVector sY = ry.lanewise(VectorOperators.SIN), cY = ry.lanewise(VectorOperators.COS);
+            FloatVector sZ = rz.lanewise(VectorOperators.SIN), cZ = rz.lanewise(VectorOperators.COS);
+            FloatVector sx = FloatVector.fromArray(S, f[trs + 6], r);
+            FloatVector sy = FloatVector.fromArray(S, f[trs + 7], r);
+            FloatVector sz = FloatVector.fromArray(S, f[trs + 8], r);
+            // Columns of Z * Y * X scaled by the scale, see Matrix4.rotate_xyz
+            cY.mul(cZ).mul(sx).intoArray(f[model], r);
+            cY.mul(sZ).mul(sx).intoArray(f[model + 1], r);
+            sY.neg().mul(sx).intoArray(f[model + 2], r);
+            zero.intoArray(f[model + 3], r);
+            sX.mul(sY).mul(cZ).sub(cX.mul(sZ)).mul(sy).intoArray(f[model + 4], r);
+            sX.mul(sY).mul(sZ).add(cX.mul(cZ)).mul(sy).intoArray(f[model + 5], r);
+            sX.mul(cY).mul(sy).intoArray(f[model + 6], r);
+            zero.intoArray(f[model + 7], r);
+            cX.mul(sY).mul(cZ).add(sX.mul(sZ)).mul(sz).intoArray(f[model + 8], r);
+            cX.mul(sY).mul(sZ).sub(sX.mul(cZ)).mul(sz).intoArray(f[model + 9], r);
+            cX.mul(cY).mul(sz).intoArray(f[model + 10], r);
+            zero.intoArray(f[model + 11], r);
+            FloatVector.fromArray(S, f[trs], r).intoArray(f[model + 12], r);
+            FloatVector.fromArray(S, f[trs + 1], r).intoArray(f[model + 13], r);
+            FloatVector.fromArray(S, f[trs + 2], r).intoArray(f[model + 14], r);
+            one.intoArray(f[model + 15], r);
+        }
+        BatchMath.SCALAR.compose(f, trs, model, r, to);
+    }
+
+    /**
+     * Interleaved x, y, z only map onto lanes through rearranges, gathers or scatters, which are all slower than the
+     * scalar loop on JDK 17 (and scatters may crash C2), so points stay scalar.
+     */
+    @Override
+    public void transformPoints(float[] m, float[] points, int offset, float[] out, int outOffset, int count) {
+        BatchMath.SCALAR.transformPoints(m, points, offset, out, outOffset, count);
+    }
+
+    /**
+     * One sphere at a time against all planes at once, the planes being spread over the lanes: as many passes as it
+     * takes to hold them (e.g. the 6 planes of a frustum take 2 passes on 4 lanes, 1 on 8).
+     */
+    @Override
+    public int cullSpheres(float[] planes, int planeCount, float[] spheres, int offset, int count, int[] visible) {
+        int lanes = S.length(), length = (planeCount + lanes - 1) / lanes * lanes;
+        float[][] t = transposed.get();
+        if (t[0].length < length) {
+            for (int k = 0; k < 4; k++) t[k] = new float[length];
+        }
+        float[] a = t[0], b = t[1], c = t[2], d = t[3];
+        // Unused lanes hold a plane no sphere is behind
+        Arrays.fill(a, planeCount, length, 0);
+        Arrays.fill(b, planeCount, length, 0);
+        Arrays.fill(c, planeCount, length, 0);
+        Arrays.fill(d, planeCount, length, Float.MAX_VALUE);
+        for (int p = 0; p < planeCount; p++) {
+            a[p] = planes[p << 2];
+            b[p] = planes[(p << 2) + 1];
+            c[p] = planes[(p << 2) + 2];
+            d[p] = planes[(p << 2) + 3];
+        }
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            int s = offset + (i << 2);
+            float x = spheres[s], y = spheres[s + 1], z = spheres[s + 2], r = -spheres[s + 3];
+            boolean inside = true;
+            for (int p = 0; p < length && inside; p += lanes) {
+                FloatVector distance = FloatVector.fromArray(S, a, p).mul(x)
+                        .add(FloatVector.fromArray(S, b, p).mul(y))
+                        .add(FloatVector.fromArray(S, c, p).mul(z))
+                        .add(FloatVector.fromArray(S, d, p));
+                inside = !distance.compare(VectorOperators.LT, r).anyTrue();
+            }
+            if (inside) visible[n++] = i;
+        }
+        return n;
+    }
+}
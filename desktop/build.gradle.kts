@@ -14,5 +14,5 @@ dependencies {
 application {
     // Define the main class for the application.
     mainClass = "org.example.app.Desktop"
-    applicationDefaultJvmArgs = mutableListOf("-XstartOnFirstThread")
+    applicationDefaultJvmArgs = mutableListOf("-XstartOnFirstThread", "--add-modules", "jdk.incubator.vector")
 }
@@ -11,4 +11,4 @@ plugins {
 }
 
 rootProject.name = "java-game-engine"
-include("desktop", "core")
+include("desktop", "core", "benchmarks")